@@ -0,0 +1,59 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.dmr.ModelNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.util.xml.to.cli.benchmark.Documents;
+
+/**
+ * Measures rendering the described operations to a CLI script, which is the last part of
+ * {@link WildFlyXmlToCli#convertXmlToCli()}.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"simple", "wide-10", "wide-100", "wide-1000", "deep-10", "deep-100", "deep-1000"})
+    String document;
+
+    @Param({"ADD", "ADD_IF_NOT_THERE"})
+    WildFlyXmlToCli.SubsystemAddStrategy addStrategy;
+
+    private WildFlyXmlToCli util;
+    private List<ModelNode> operations;
+
+    @Setup
+    public void setup() throws Exception {
+        Documents documents = Documents.forSpec(document);
+        util = WildFlyXmlToCli.builder()
+                .setExtension(documents.getExtension())
+                .setSubsystemName(documents.getSubsystemName())
+                .setXml(documents.getXml())
+                .setAddStrategy(addStrategy)
+                .build();
+        operations = util.convertXmlToOperations();
+    }
+
+    @Benchmark
+    public String render() {
+        return util.convertOperationsToCli(operations);
+    }
+}
@@ -0,0 +1,91 @@
+package org.wildfly.util.xml.to.cli.benchmark;
+
+import org.jboss.as.controller.Extension;
+import org.wildfly.util.xml.to.cli.subsystem.SimpleSubsystemExtension;
+
+/**
+ * Generates the documents used by the benchmarks. A document is chosen by a spec string, which is one of
+ * <ul>
+ *     <li>{@code simple} - the empty {@link SimpleSubsystemExtension} subsystem</li>
+ *     <li>{@code wide-<n>} - a {@link SyntheticSubsystemExtension} subsystem with {@code n} top level resources</li>
+ *     <li>{@code deep-<n>} - a {@link SyntheticSubsystemExtension} subsystem with {@code n} resources, nested in
+ *     chains of {@link SyntheticSubsystemExtension#MAX_DEPTH}</li>
+ * </ul>
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class Documents {
+
+    private final Extension extension;
+    private final String subsystemName;
+    private final String xml;
+
+    private Documents(Extension extension, String subsystemName, String xml) {
+        this.extension = extension;
+        this.subsystemName = subsystemName;
+        this.xml = xml;
+    }
+
+    public static Documents forSpec(String spec) {
+        if (spec.equals("simple")) {
+            return new Documents(new SimpleSubsystemExtension(), SimpleSubsystemExtension.SUBSYSTEM_NAME,
+                    "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\"></subsystem>");
+        }
+        int index = spec.indexOf('-');
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown document spec " + spec);
+        }
+        String shape = spec.substring(0, index);
+        int size = Integer.parseInt(spec.substring(index + 1));
+        StringBuilder sb = new StringBuilder();
+        sb.append("<subsystem xmlns=\"").append(SyntheticSubsystemExtension.NAMESPACE).append("\">\n");
+        switch (shape) {
+            case "wide":
+                for (int i = 0; i < size; i++) {
+                    appendResource(sb, i, 1, 1);
+                }
+                break;
+            case "deep":
+                for (int i = 0; i < size; i += SyntheticSubsystemExtension.MAX_DEPTH) {
+                    appendResource(sb, i, 1, Math.min(SyntheticSubsystemExtension.MAX_DEPTH, size - i));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown document spec " + spec);
+        }
+        sb.append("</subsystem>\n");
+        return new Documents(new SyntheticSubsystemExtension(), SyntheticSubsystemExtension.SUBSYSTEM_NAME, sb.toString());
+    }
+
+    private static void appendResource(StringBuilder sb, int index, int depth, int maxDepth) {
+        for (int i = 0; i < depth; i++) {
+            sb.append("    ");
+        }
+        sb.append("<resource name=\"r").append(index).append('-').append(depth)
+                .append("\" value=\"value/").append(index).append("=").append(depth)
+                .append("\" count=\"").append(index)
+                .append("\" enabled=\"${enabled:true}\"");
+        if (depth < maxDepth) {
+            sb.append(">\n");
+            appendResource(sb, index, depth + 1, maxDepth);
+            for (int i = 0; i < depth; i++) {
+                sb.append("    ");
+            }
+            sb.append("</resource>\n");
+        } else {
+            sb.append("/>\n");
+        }
+    }
+
+    public Extension getExtension() {
+        return extension;
+    }
+
+    public String getSubsystemName() {
+        return subsystemName;
+    }
+
+    public String getXml() {
+        return xml;
+    }
+}
@@ -0,0 +1,193 @@
+package org.wildfly.util.xml.to.cli.benchmark;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.ExtensionContext;
+import org.jboss.as.controller.ModelOnlyAddStepHandler;
+import org.jboss.as.controller.ModelOnlyRemoveStepHandler;
+import org.jboss.as.controller.ModelOnlyWriteAttributeHandler;
+import org.jboss.as.controller.ModelVersion;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.SimpleResourceDefinition;
+import org.jboss.as.controller.SubsystemRegistration;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
+import org.jboss.as.controller.operations.common.GenericSubsystemDescribeHandler;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.parsing.ParseUtils;
+import org.jboss.as.controller.persistence.SubsystemMarshallingContext;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+import org.jboss.staxmapper.XMLElementReader;
+import org.jboss.staxmapper.XMLElementWriter;
+import org.jboss.staxmapper.XMLExtendedStreamReader;
+import org.jboss.staxmapper.XMLExtendedStreamWriter;
+
+/**
+ * A subsystem used to generate documents of different sizes. It consists of {@code resource} elements with a few
+ * attributes, which can be nested up to {@link #MAX_DEPTH} levels deep.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class SyntheticSubsystemExtension implements Extension {
+
+    public static final String NAMESPACE = "urn:wildfly:xml-to-cli:synthetic:1.0";
+
+    public static final String SUBSYSTEM_NAME = "synthetic";
+
+    public static final String RESOURCE = "resource";
+
+    public static final int MAX_DEPTH = 10;
+
+    static final SimpleAttributeDefinition VALUE = SimpleAttributeDefinitionBuilder.create("value", ModelType.STRING, true)
+            .setAllowExpression(true)
+            .build();
+
+    static final SimpleAttributeDefinition COUNT = SimpleAttributeDefinitionBuilder.create("count", ModelType.INT, true)
+            .setAllowExpression(true)
+            .build();
+
+    static final SimpleAttributeDefinition ENABLED = SimpleAttributeDefinitionBuilder.create("enabled", ModelType.BOOLEAN, true)
+            .setAllowExpression(true)
+            .build();
+
+    static final AttributeDefinition[] ATTRIBUTES = {VALUE, COUNT, ENABLED};
+
+    private final SubsystemParser parser = new SubsystemParser();
+
+    @Override
+    public void initializeParsers(ExtensionParsingContext context) {
+        context.setSubsystemXmlMapping(SUBSYSTEM_NAME, NAMESPACE, parser);
+    }
+
+    @Override
+    public void initialize(ExtensionContext context) {
+        final SubsystemRegistration subsystem = context.registerSubsystem(SUBSYSTEM_NAME, ModelVersion.create(1));
+        final ManagementResourceRegistration registration = subsystem.registerSubsystemModel(new SimpleResourceDefinition(
+                PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME),
+                new NonResolvingResourceDescriptionResolver(),
+                new ModelOnlyAddStepHandler(),
+                ModelOnlyRemoveStepHandler.INSTANCE
+        ));
+        registration.registerOperationHandler(GenericSubsystemDescribeHandler.DEFINITION, GenericSubsystemDescribeHandler.INSTANCE);
+        registration.registerSubModel(new SyntheticResourceDefinition(1));
+        subsystem.registerXMLElementWriter(parser);
+    }
+
+    /**
+     * The definition of a {@code resource} at a given depth. The tree is finite, since registering a resource as a
+     * child of itself would recurse forever.
+     */
+    private static class SyntheticResourceDefinition extends SimpleResourceDefinition {
+        private final int depth;
+
+        SyntheticResourceDefinition(int depth) {
+            super(PathElement.pathElement(RESOURCE),
+                    new NonResolvingResourceDescriptionResolver(),
+                    new ModelOnlyAddStepHandler(ATTRIBUTES),
+                    ModelOnlyRemoveStepHandler.INSTANCE);
+            this.depth = depth;
+        }
+
+        @Override
+        public void registerAttributes(ManagementResourceRegistration resourceRegistration) {
+            ModelOnlyWriteAttributeHandler writeHandler = new ModelOnlyWriteAttributeHandler(ATTRIBUTES);
+            for (AttributeDefinition attr : ATTRIBUTES) {
+                resourceRegistration.registerReadWriteAttribute(attr, null, writeHandler);
+            }
+        }
+
+        @Override
+        public void registerChildren(ManagementResourceRegistration resourceRegistration) {
+            if (depth < MAX_DEPTH) {
+                resourceRegistration.registerSubModel(new SyntheticResourceDefinition(depth + 1));
+            }
+        }
+    }
+
+    private static class SubsystemParser implements XMLStreamConstants, XMLElementReader<List<ModelNode>>, XMLElementWriter<SubsystemMarshallingContext> {
+
+        @Override
+        public void readElement(XMLExtendedStreamReader reader, List<ModelNode> list) throws XMLStreamException {
+            ParseUtils.requireNoAttributes(reader);
+            PathAddress address = PathAddress.pathAddress(SUBSYSTEM, SUBSYSTEM_NAME);
+            list.add(Util.createAddOperation(address));
+            readResources(reader, address, list);
+        }
+
+        private void readResources(XMLExtendedStreamReader reader, PathAddress parent, List<ModelNode> list) throws XMLStreamException {
+            while (reader.hasNext() && reader.nextTag() != END_ELEMENT) {
+                if (!RESOURCE.equals(reader.getLocalName())) {
+                    throw ParseUtils.unexpectedElement(reader);
+                }
+                String name = null;
+                ModelNode op = new ModelNode();
+                op.get(OP).set(ADD);
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String value = reader.getAttributeValue(i);
+                    switch (reader.getAttributeLocalName(i)) {
+                        case "name":
+                            name = value;
+                            break;
+                        case "value":
+                            VALUE.parseAndSetParameter(value, op, reader);
+                            break;
+                        case "count":
+                            COUNT.parseAndSetParameter(value, op, reader);
+                            break;
+                        case "enabled":
+                            ENABLED.parseAndSetParameter(value, op, reader);
+                            break;
+                        default:
+                            throw ParseUtils.unexpectedAttribute(reader, i);
+                    }
+                }
+                if (name == null) {
+                    throw ParseUtils.missingRequired(reader, Collections.singleton("name"));
+                }
+                PathAddress address = parent.append(PathElement.pathElement(RESOURCE, name));
+                op.get(OP_ADDR).set(address.toModelNode());
+                list.add(op);
+                readResources(reader, address, list);
+            }
+        }
+
+        @Override
+        public void writeContent(XMLExtendedStreamWriter writer, SubsystemMarshallingContext context) throws XMLStreamException {
+            context.startSubsystemElement(NAMESPACE, false);
+            writeResources(writer, context.getModelNode());
+            writer.writeEndElement();
+        }
+
+        private void writeResources(XMLExtendedStreamWriter writer, ModelNode model) throws XMLStreamException {
+            if (!model.hasDefined(RESOURCE)) {
+                return;
+            }
+            for (Property property : model.get(RESOURCE).asPropertyList()) {
+                writer.writeStartElement(RESOURCE);
+                writer.writeAttribute("name", property.getName());
+                for (AttributeDefinition attr : ATTRIBUTES) {
+                    ((SimpleAttributeDefinition) attr).marshallAsAttribute(property.getValue(), writer);
+                }
+                writeResources(writer, property.getValue());
+                writer.writeEndElement();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.dmr.ModelNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.util.xml.to.cli.benchmark.Documents;
+
+/**
+ * Measures booting a controller with already parsed boot operations, i.e. {@link KernelServicesImpl#create}.
+ * The controller is shut down outside of the measured section.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BootBenchmark {
+
+    @Param({"simple", "wide-10", "wide-100", "wide-1000", "deep-10", "deep-100", "deep-1000"})
+    String document;
+
+    private SubsystemTestDelegate delegate;
+    private List<ModelNode> bootOperations;
+    private KernelServices services;
+
+    @Setup
+    public void setup() throws Exception {
+        Documents documents = Documents.forSpec(document);
+        delegate = new SubsystemTestDelegate(documents.getSubsystemName(), documents.getExtension());
+        delegate.initializeParser();
+        bootOperations = delegate.parse(documents.getXml());
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdownController() {
+        if (services != null) {
+            delegate.shutdown(services);
+            services = null;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        delegate.cleanup();
+    }
+
+    @Benchmark
+    public KernelServices boot() throws Exception {
+        // The boot operations get modified by the controller, so pass in a copy
+        services = delegate.createKernelServicesBuilder().setBootOperations(copy(bootOperations)).build();
+        if (!services.isSuccessfulBoot()) {
+            throw new IllegalStateException("Boot failed", services.getBootError());
+        }
+        return services;
+    }
+
+    static List<ModelNode> copy(List<ModelNode> operations) {
+        List<ModelNode> copy = new ArrayList<>(operations.size());
+        for (ModelNode op : operations) {
+            copy.add(op.clone());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,65 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.dmr.ModelNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.util.xml.to.cli.benchmark.Documents;
+
+/**
+ * Measures the {@code describe} operation {@link Worker} runs against the booted controller to get the add
+ * operations back.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescribeBenchmark {
+
+    @Param({"simple", "wide-10", "wide-100", "wide-1000", "deep-10", "deep-100", "deep-1000"})
+    String document;
+
+    private SubsystemTestDelegate delegate;
+    private KernelServices services;
+    private ModelNode describe;
+
+    @Setup
+    public void setup() throws Exception {
+        Documents documents = Documents.forSpec(document);
+        delegate = new SubsystemTestDelegate(documents.getSubsystemName(), documents.getExtension());
+        delegate.initializeParser();
+        services = delegate.createKernelServicesBuilder().setSubsystemXml(documents.getXml()).build();
+        if (!services.isSuccessfulBoot()) {
+            throw new IllegalStateException("Boot failed", services.getBootError());
+        }
+        describe = Util.createOperation("describe", PathAddress.pathAddress("subsystem", documents.getSubsystemName()));
+        describe.protect();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        delegate.cleanup();
+    }
+
+    @Benchmark
+    public ModelNode describe() throws Exception {
+        return services.executeForResult(describe);
+    }
+}
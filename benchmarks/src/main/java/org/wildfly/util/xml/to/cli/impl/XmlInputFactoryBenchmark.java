@@ -0,0 +1,84 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.jboss.dmr.ModelNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.util.xml.to.cli.benchmark.Documents;
+
+/**
+ * Compares the StAX implementations which can be plugged in with
+ * {@link org.wildfly.util.xml.to.cli.WildFlyXmlToCli.Builder#setXmlInputFactory(XMLInputFactory)} on large documents.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlInputFactoryBenchmark {
+
+    @Param({"jdk", "woodstox", "aalto"})
+    String parser;
+
+    @Param({"wide-1000", "deep-1000"})
+    String document;
+
+    private SubsystemTestDelegate delegate;
+    private String xml;
+
+    @Setup
+    public void setup() throws Exception {
+        Documents documents = Documents.forSpec(document);
+        delegate = new SubsystemTestDelegate(documents.getSubsystemName(), documents.getExtension());
+        delegate.initializeParser();
+        delegate.setXmlInputFactory(XmlInputFactories.configure(createFactory(parser)));
+        xml = documents.getXml();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        delegate.cleanup();
+    }
+
+    @Benchmark
+    public List<ModelNode> parse() throws Exception {
+        return delegate.parse(xml);
+    }
+
+    private static XMLInputFactory createFactory(String parser) throws Exception {
+        switch (parser) {
+            case "jdk":
+                try {
+                    // Java 9+
+                    Method newDefaultFactory = XMLInputFactory.class.getMethod("newDefaultFactory");
+                    return (XMLInputFactory) newDefaultFactory.invoke(null);
+                } catch (NoSuchMethodException e) {
+                    return (XMLInputFactory) Class.forName("com.sun.xml.internal.stream.XMLInputFactoryImpl").getDeclaredConstructor().newInstance();
+                }
+            case "woodstox":
+                return (XMLInputFactory) Class.forName("com.ctc.wstx.stax.WstxInputFactory").getDeclaredConstructor().newInstance();
+            case "aalto":
+                return (XMLInputFactory) Class.forName("com.fasterxml.aalto.stax.InputFactoryImpl").getDeclaredConstructor().newInstance();
+            default:
+                throw new IllegalArgumentException("Unknown parser: " + parser);
+        }
+    }
+}
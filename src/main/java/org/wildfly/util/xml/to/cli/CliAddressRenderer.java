@@ -0,0 +1,121 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+
+/**
+ * Renders addresses in CLI syntax. The operations for a subsystem mostly share the same parent addresses, so each
+ * rendered address prefix is kept in a trie keyed on {@link PathElement}. Rendering an address whose parent has
+ * already been seen then only renders its last element.
+ * <p>
+ * We could have used PathAddress.toCLIStyleString() but keycloak uses some strange path element values in some
+ * cases, which need quoting (https://issues.jboss.org/browse/WFCORE-4570). So values containing any character
+ * which means something to the CLI are quoted, and any quotes and backslashes in them are escaped.
+ * <p>
+ * Instances are not thread safe, and are meant to be used for rendering one list of operations.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+final class CliAddressRenderer {
+
+    private final Node root = new Node("");
+
+    /**
+     * Appends the address in CLI syntax
+     *
+     * @param address the address
+     * @param out where to write the address
+     */
+    void render(PathAddress address, Appendable out) throws IOException {
+        out.append(get(address));
+    }
+
+    /**
+     * Gets the address in CLI syntax
+     *
+     * @param address the address
+     * @return the rendered address
+     */
+    String get(PathAddress address) {
+        Node node = root;
+        for (int i = 0; i < address.size(); i++) {
+            node = node.child(address.getElement(i));
+        }
+        return node.rendered;
+    }
+
+    /**
+     * Quotes a path element value if it contains any characters which mean something to the CLI, escaping
+     * quotes and backslashes. The value is only scanned once, and is returned as it is if nothing needs quoting.
+     *
+     * @param value the value
+     * @return the value to use in the CLI
+     */
+    static String escape(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (sb == null) {
+                if (!isSpecial(c)) {
+                    continue;
+                }
+                sb = new StringBuilder(value.length() + 8);
+                sb.append('"');
+                sb.append(value, 0, i);
+            }
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        if (sb == null) {
+            return value;
+        }
+        return sb.append('"').toString();
+    }
+
+    private static boolean isSpecial(char c) {
+        switch (c) {
+            case '/':
+            case '=':
+            case ':':
+            case ',':
+            case '(':
+            case ')':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+            case '"':
+            case '\\':
+                return true;
+            default:
+                return Character.isWhitespace(c);
+        }
+    }
+
+    private static final class Node {
+        private final String rendered;
+        private Map<PathElement, Node> children;
+
+        Node(String rendered) {
+            this.rendered = rendered;
+        }
+
+        Node child(PathElement element) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Node child = children.get(element);
+            if (child == null) {
+                child = new Node(rendered + "/" + element.getKey() + "=" + escape(element.getValue()));
+                children.put(element, child);
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.io.IOException;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+
+/**
+ * Writes operation parameter values in CLI syntax. Simple values are quoted, while complex values are written in
+ * the compact DMR syntax which {@link ModelNode#asString()} uses. Rather than building the string for the whole
+ * value first, the value is walked once and written straight to the output.
+ * <p>
+ * Quotes and backslashes in strings are escaped. For simple values expressions are escaped as well, so that
+ * the CLI passes them on to the server rather than trying to resolve them itself. Expressions nested in complex
+ * values are written using the DMR {@code expression} syntax.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+final class CliValueEncoder {
+
+    private CliValueEncoder() {
+    }
+
+    /**
+     * Writes a parameter value
+     *
+     * @param value the value
+     * @param out where to write the value
+     */
+    static void write(ModelNode value, Appendable out) throws IOException {
+        switch (value.getType()) {
+            case OBJECT:
+            case LIST:
+            case PROPERTY:
+                writeDmr(value, out);
+                break;
+            default:
+                writeSimple(value.asString(), out);
+        }
+    }
+
+    private static void writeSimple(String value, Appendable out) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.append('\\');
+                    break;
+                case '$':
+                    if (i == 0 || (i + 1 < value.length() && value.charAt(i + 1) == '{')) {
+                        out.append('\\');
+                    }
+                    break;
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * Writes a value in compact DMR syntax
+     *
+     * @param value the value
+     * @param out where to write the value
+     */
+    static void writeDmr(ModelNode value, Appendable out) throws IOException {
+        switch (value.getType()) {
+            case OBJECT: {
+                out.append('{');
+                boolean first = true;
+                for (String key : value.keys()) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    writeQuoted(key, out);
+                    out.append(" => ");
+                    writeDmr(value.get(key), out);
+                }
+                out.append('}');
+                break;
+            }
+            case LIST: {
+                out.append('[');
+                boolean first = true;
+                for (ModelNode element : value.asList()) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    writeDmr(element, out);
+                }
+                out.append(']');
+                break;
+            }
+            case PROPERTY: {
+                Property property = value.asProperty();
+                out.append('(');
+                writeQuoted(property.getName(), out);
+                out.append(" => ");
+                writeDmr(property.getValue(), out);
+                out.append(')');
+                break;
+            }
+            case STRING:
+                writeQuoted(value.asString(), out);
+                break;
+            case EXPRESSION:
+                out.append("expression ");
+                writeQuoted(value.asString(), out);
+                break;
+            case LONG:
+                out.append(value.asString()).append('L');
+                break;
+            case BIG_DECIMAL:
+                out.append("big decimal ").append(value.asString());
+                break;
+            case BIG_INTEGER:
+                out.append("big integer ").append(value.asString());
+                break;
+            case BYTES: {
+                out.append("bytes {");
+                byte[] bytes = value.asBytes();
+                for (int i = 0; i < bytes.length; i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    out.append(" 0x");
+                    out.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+                    out.append(Character.forDigit(bytes[i] & 0xF, 16));
+                }
+                out.append(" }");
+                break;
+            }
+            default:
+                // INT, DOUBLE, BOOLEAN, TYPE and UNDEFINED are written as they are
+                out.append(value.asString());
+        }
+    }
+
+    private static void writeQuoted(String value, Appendable out) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
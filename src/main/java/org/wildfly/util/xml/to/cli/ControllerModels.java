@@ -0,0 +1,193 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The parts of the server model outside the subsystem which should be set up in the controller before the
+ * subsystem is added, for subsystems referencing system properties, socket bindings or paths. By default none
+ * of them are set up, and only the parts declared here are registered and get boot operations.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ControllerModels {
+
+    /**
+     * No extra models
+     */
+    public static final ControllerModels NONE = builder().build();
+
+    private final Map<String, String> systemProperties;
+    private final Map<String, Integer> socketBindings;
+    private final Map<String, RemoteDestination> remoteOutboundSocketBindings;
+    private final Map<String, PathDefinition> paths;
+    private final String bindAddress;
+    private final String portOffset;
+
+    private ControllerModels(Builder builder) {
+        this.systemProperties = Collections.unmodifiableMap(new LinkedHashMap<>(builder.systemProperties));
+        this.socketBindings = Collections.unmodifiableMap(new LinkedHashMap<>(builder.socketBindings));
+        this.remoteOutboundSocketBindings = Collections.unmodifiableMap(new LinkedHashMap<>(builder.remoteOutboundSocketBindings));
+        this.paths = Collections.unmodifiableMap(new LinkedHashMap<>(builder.paths));
+        this.bindAddress = builder.bindAddress;
+        this.portOffset = builder.portOffset;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Map<String, String> getSystemProperties() {
+        return systemProperties;
+    }
+
+    public Map<String, Integer> getSocketBindings() {
+        return socketBindings;
+    }
+
+    public Map<String, RemoteDestination> getRemoteOutboundSocketBindings() {
+        return remoteOutboundSocketBindings;
+    }
+
+    public Map<String, PathDefinition> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Gets the address of the interface the socket bindings use
+     *
+     * @return the bind address, or {@code null} for the default of {@code localhost}
+     */
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    /**
+     * Gets the port offset of the socket binding group
+     *
+     * @return the port offset, or {@code null} for none
+     */
+    public String getPortOffset() {
+        return portOffset;
+    }
+
+    public static class Builder {
+        private final Map<String, String> systemProperties = new LinkedHashMap<>();
+        private final Map<String, Integer> socketBindings = new LinkedHashMap<>();
+        private final Map<String, RemoteDestination> remoteOutboundSocketBindings = new LinkedHashMap<>();
+        private final Map<String, PathDefinition> paths = new LinkedHashMap<>();
+        private String bindAddress;
+        private String portOffset;
+
+        private Builder() {
+        }
+
+        public Builder addSystemProperty(String name, String value) {
+            systemProperties.put(name, value);
+            return this;
+        }
+
+        /**
+         * Adds a socket binding to the {@code test-socket-binding-group} socket binding group, which uses the
+         * {@code test-interface} interface
+         *
+         * @param name the socket binding name
+         * @param port the port
+         * @return this builder
+         */
+        public Builder addSocketBinding(String name, int port) {
+            socketBindings.put(name, port);
+            return this;
+        }
+
+        public Builder addRemoteOutboundSocketBinding(String name, String host, int port) {
+            remoteOutboundSocketBindings.put(name, new RemoteDestination(host, port));
+            return this;
+        }
+
+        /**
+         * Adds a path
+         *
+         * @param name the name of the path
+         * @param path the absolute path, or the path relative to {@code relativeTo}
+         * @param relativeTo the name of the path {@code path} is relative to, may be {@code null}
+         * @return this builder
+         */
+        public Builder addPath(String name, String path, String relativeTo) {
+            paths.put(name, new PathDefinition(path, relativeTo));
+            return this;
+        }
+
+        public Builder setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+            return this;
+        }
+
+        public Builder setPortOffset(String portOffset) {
+            this.portOffset = portOffset;
+            return this;
+        }
+
+        public ControllerModels build() {
+            for (Map.Entry<String, String> entry : systemProperties.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    throw new IllegalStateException("System properties need a name and a value");
+                }
+            }
+            for (Map.Entry<String, Integer> entry : socketBindings.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() < 0) {
+                    throw new IllegalStateException("Socket bindings need a name and a port which is not negative");
+                }
+            }
+            for (Map.Entry<String, RemoteDestination> entry : remoteOutboundSocketBindings.entrySet()) {
+                RemoteDestination destination = entry.getValue();
+                if (entry.getKey() == null || destination.host == null || destination.host.trim().isEmpty() || destination.port < 0) {
+                    throw new IllegalStateException("Outbound socket bindings need a name, a host and a port which is not negative");
+                }
+            }
+            for (Map.Entry<String, PathDefinition> entry : paths.entrySet()) {
+                if (entry.getKey() == null || entry.getValue().path == null) {
+                    throw new IllegalStateException("Paths need a name and a path");
+                }
+            }
+            return new ControllerModels(this);
+        }
+    }
+
+    public static final class RemoteDestination {
+        private final String host;
+        private final int port;
+
+        private RemoteDestination(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+    }
+
+    public static final class PathDefinition {
+        private final String path;
+        private final String relativeTo;
+
+        private PathDefinition(String path, String relativeTo) {
+            this.path = path;
+            this.relativeTo = relativeTo;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getRelativeTo() {
+            return relativeTo;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A cache of converted CLI scripts, which can be passed in to {@link WildFlyXmlToCli.Builder#setCache(ConversionCache)}
+ * so that converting the same xml with the same extension and options again returns the earlier result without
+ * parsing the xml or booting a controller.
+ * <p>
+ * The scripts are keyed by a SHA-256 hash of the xml, with line endings normalized and surrounding whitespace
+ * removed, the extension classes and the versions or hashes of the jars containing them, the subsystem name and
+ * the output options. The most recently used scripts are kept in memory, and if a directory is set all scripts are
+ * also stored there, so that they survive between runs.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ConversionCache {
+
+    private static final String FILE_SUFFIX = ".cli";
+
+    // The versions of the extension classes, see getVersion()
+    private static final ClassValue<String> VERSIONS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> clazz) {
+            Package pkg = clazz.getPackage();
+            if (pkg != null && pkg.getImplementationVersion() != null) {
+                return pkg.getImplementationVersion();
+            }
+            CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                return "";
+            }
+            URL location = codeSource.getLocation();
+            try {
+                Path path = Paths.get(location.toURI());
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                if (Files.isDirectory(path)) {
+                    hashClassFiles(digest, path);
+                } else {
+                    digest.update(Files.readAllBytes(path));
+                }
+                return location + "@" + toHex(digest.digest());
+            } catch (URISyntaxException | IOException | NoSuchAlgorithmException | RuntimeException e) {
+                return location.toString();
+            }
+        }
+    };
+
+    private final Path directory;
+    private final Map<String, String> memory;
+
+    private ConversionCache(Builder builder) {
+        this.directory = builder.directory;
+        final int maxEntries = builder.maxEntries;
+        this.memory = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the number of scripts held in memory
+     *
+     * @return the number of scripts
+     */
+    public int size() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    /**
+     * Clears the scripts held in memory. The files in the directory, if any, are left alone.
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    String get(String key) {
+        synchronized (memory) {
+            String cli = memory.get(key);
+            if (cli != null) {
+                return cli;
+            }
+        }
+        if (directory != null) {
+            Path file = directory.resolve(key + FILE_SUFFIX);
+            if (Files.exists(file)) {
+                try {
+                    String cli = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    putInMemory(key, cli);
+                    return cli;
+                } catch (IOException e) {
+                    // Treat it as a miss, it will be written again
+                }
+            }
+        }
+        return null;
+    }
+
+    void put(String key, String cli) {
+        putInMemory(key, cli);
+        if (directory != null) {
+            try {
+                // Write to a temporary file first, so that readers never see a partially written script
+                Path tmp = Files.createTempFile(directory, key, ".tmp");
+                try {
+                    Files.write(tmp, cli.getBytes(StandardCharsets.UTF_8));
+                    Files.move(tmp, directory.resolve(key + FILE_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException e) {
+                // The script is still cached in memory, and there is no point failing the conversion
+            }
+        }
+    }
+
+    private void putInMemory(String key, String cli) {
+        synchronized (memory) {
+            memory.put(key, cli);
+        }
+    }
+
+    /**
+     * Creates the cache key for a conversion
+     *
+     * @param xml the xml
+     * @param extensionClasses the extension classes
+     * @param options the other settings affecting the output
+     * @return the key
+     */
+    static String key(String xml, List<Class<?>> extensionClasses, List<String> options) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+        update(digest, normalize(xml));
+        for (Class<?> extensionClass : extensionClasses) {
+            update(digest, extensionClass.getName());
+            update(digest, getVersion(extensionClass));
+        }
+        for (String option : options) {
+            update(digest, option);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        // Separate the values, so that moving characters from one to the next gives a different key
+        digest.update((byte) 0);
+    }
+
+    private static String normalize(String xml) {
+        String normalized = xml;
+        if (!normalized.isEmpty() && normalized.charAt(0) == '\uFEFF') {
+            normalized = normalized.substring(1);
+        }
+        return normalized.replace("\r\n", "\n").replace('\r', '\n').trim();
+    }
+
+    /**
+     * Gets the version of the jar or class directory containing the class. This is the implementation version from
+     * the manifest if there is one, and otherwise a hash of the jar, or of the class files in the directory. A
+     * loaded class does not change, so this is only worked out once for each class.
+     */
+    private static String getVersion(Class<?> clazz) {
+        return VERSIONS.get(clazz);
+    }
+
+    private static void hashClassFiles(MessageDigest digest, Path directory) throws IOException {
+        final List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            classFiles = files
+                    .filter(file -> file.getFileName().toString().endsWith(".class"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            update(digest, directory.relativize(classFile).toString());
+            digest.update(Files.readAllBytes(classFile));
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public static class Builder {
+        private int maxEntries = 256;
+        private Path directory;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of scripts to keep in memory. The default is 256.
+         *
+         * @param maxEntries the maximum number of scripts
+         * @return this builder
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the directory to store the scripts in, in addition to memory. It is created if it does not exist.
+         *
+         * @param directory the directory
+         * @return this builder
+         */
+        public Builder setDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public ConversionCache build() throws IOException {
+            if (maxEntries < 0) {
+                throw new IllegalStateException("The maximum number of entries cannot be negative");
+            }
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            return new ConversionCache(this);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.wildfly.util.xml.to.cli;
+
+/**
+ * Gets told about the phases of conversions, to find out where the time goes. Set it with
+ * {@link WildFlyXmlToCli.Builder#setListener(ConversionListener)}.
+ * <p>
+ * Both methods are called on the thread running the phase, and listeners may be called by several threads at once.
+ * Only phases which complete successfully are reported to {@link #phaseCompleted(PhaseMetrics)}.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ * @see HistogramConversionListener
+ * @see JfrConversionListener
+ */
+public interface ConversionListener {
+
+    /**
+     * Called when a phase starts
+     *
+     * @param phase the phase
+     * @param subsystemName the name of the subsystem being converted, or {@code null} when converting several
+     *                      subsystems at once
+     */
+    default void phaseStarted(ConversionPhase phase, String subsystemName) {
+    }
+
+    /**
+     * Called when a phase has completed
+     *
+     * @param metrics the measurements for the phase
+     */
+    void phaseCompleted(PhaseMetrics metrics);
+}
@@ -0,0 +1,32 @@
+package org.wildfly.util.xml.to.cli;
+
+/**
+ * The phases of a conversion reported to a {@link ConversionListener}
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public enum ConversionPhase {
+    /**
+     * Parsing the xml into operations, including checking them in {@link WildFlyXmlToCli.ConversionMode#PARSE_ONLY}
+     * mode
+     */
+    PARSE,
+    /**
+     * Booting a controller with the parsed operations, or taking a booted controller from an
+     * {@link XmlToCliEngine}'s pool. When a new controller is booted this includes {@link #EXECUTE}.
+     */
+    BOOT,
+    /**
+     * Executing the parsed operations, either as the boot operations of a new controller or against a controller
+     * from an {@link XmlToCliEngine}'s pool
+     */
+    EXECUTE,
+    /**
+     * Reading the resulting model back as operations with the subsystem {@code describe} operation
+     */
+    DESCRIBE,
+    /**
+     * Writing the operations as a CLI script, or in another {@link OutputFormat}
+     */
+    RENDER
+}
@@ -0,0 +1,36 @@
+package org.wildfly.util.xml.to.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder event recorded by {@link JfrConversionListener} for each phase
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+@Name("org.wildfly.util.xml.to.cli.ConversionPhase")
+@Label("Conversion Phase")
+@Category({"WildFly", "XML to CLI"})
+@Description("A phase of converting subsystem xml to CLI")
+class ConversionPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Subsystem")
+    String subsystemName;
+
+    @Label("Operations")
+    int operationCount;
+
+    @Label("Document Size")
+    long documentSize;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
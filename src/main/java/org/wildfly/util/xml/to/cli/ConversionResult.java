@@ -0,0 +1,62 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of converting one of the documents passed in to
+ * {@link WildFlyXmlToCli#convertAll(java.util.Collection, java.util.concurrent.Executor)}. A failed conversion
+ * does not affect the other documents.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ConversionResult {
+
+    private final Path path;
+    private final String cli;
+    private final Exception error;
+
+    private ConversionResult(Path path, String cli, Exception error) {
+        this.path = path;
+        this.cli = cli;
+        this.error = error;
+    }
+
+    static ConversionResult success(Path path, String cli) {
+        return new ConversionResult(path, cli, null);
+    }
+
+    static ConversionResult failure(Path path, Exception error) {
+        return new ConversionResult(path, null, error);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Gets the CLI script
+     *
+     * @return the CLI script, or {@code null} if the conversion failed
+     */
+    public String getCli() {
+        return cli;
+    }
+
+    /**
+     * Gets the reason the conversion failed
+     *
+     * @return the error, or {@code null} if the conversion succeeded
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionResult{path=" + path + (error == null ? "" : ", error=" + error) + "}";
+    }
+}
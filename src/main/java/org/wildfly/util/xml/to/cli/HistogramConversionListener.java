@@ -0,0 +1,168 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ConversionListener} which records the phase durations in memory. The durations are kept in a histogram
+ * with a bucket per power of two nanoseconds, so percentiles are approximate, and are rounded up to the next power
+ * of two.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class HistogramConversionListener implements ConversionListener {
+
+    private final Map<ConversionPhase, Histogram> histograms = new EnumMap<>(ConversionPhase.class);
+
+    public HistogramConversionListener() {
+        for (ConversionPhase phase : ConversionPhase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void phaseCompleted(PhaseMetrics metrics) {
+        histograms.get(metrics.getPhase()).record(metrics);
+    }
+
+    /**
+     * Gets the statistics recorded for a phase so far
+     *
+     * @param phase the phase
+     * @return the statistics
+     */
+    public PhaseStatistics getStatistics(ConversionPhase phase) {
+        return histograms.get(phase).snapshot();
+    }
+
+    /**
+     * Clears all the recorded statistics
+     */
+    public void reset() {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        void record(PhaseMetrics metrics) {
+            long nanos = Math.max(0, metrics.getDurationNanos());
+            buckets.incrementAndGet(nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            operations.add(metrics.getOperationCount());
+            if (metrics.getAllocatedBytes() > 0) {
+                allocatedBytes.add(metrics.getAllocatedBytes());
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            operations.reset();
+            allocatedBytes.reset();
+        }
+
+        PhaseStatistics snapshot() {
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new PhaseStatistics(counts, count.sum(), totalNanos.sum(), maxNanos.get(), operations.sum(), allocatedBytes.sum());
+        }
+    }
+
+    /**
+     * The statistics recorded for a phase
+     */
+    public static final class PhaseStatistics {
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long totalOperations;
+        private final long totalAllocatedBytes;
+
+        private PhaseStatistics(long[] buckets, long count, long totalNanos, long maxNanos, long totalOperations, long totalAllocatedBytes) {
+            this.buckets = buckets;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.totalOperations = totalOperations;
+            this.totalAllocatedBytes = totalAllocatedBytes;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Gets the approximate duration which the given percentage of the recorded durations do not exceed
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the duration in nanoseconds
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    // The upper bound of the bucket, but not more than the longest duration seen
+                    return i >= 62 ? maxNanos : Math.min(maxNanos, (1L << (i + 1)) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        public long getTotalOperations() {
+            return totalOperations;
+        }
+
+        /**
+         * Gets the number of bytes allocated by the phase in total, for the conversions where this could be measured
+         *
+         * @return the number of bytes
+         */
+        public long getTotalAllocatedBytes() {
+            return totalAllocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "PhaseStatistics{count=" + count + ", meanNanos=" + getMeanNanos() + ", p50Nanos=" + getPercentileNanos(50)
+                    + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + maxNanos + ", totalOperations=" + totalOperations
+                    + ", totalAllocatedBytes=" + totalAllocatedBytes + "}";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.wildfly.util.xml.to.cli;
+
+/**
+ * A {@link ConversionListener} which records a Java Flight Recorder event for each phase, named
+ * {@code org.wildfly.util.xml.to.cli.ConversionPhase}. The events only cost anything while a recording with
+ * them enabled is running, so this can be left on in production. It needs a JVM with JFR, which is Java 11, or
+ * Java 8 from update 262.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class JfrConversionListener implements ConversionListener {
+
+    // Phases run one after the other on a thread, so there is only ever one event in progress per thread
+    private final ThreadLocal<ConversionPhaseEvent> current = new ThreadLocal<>();
+
+    @Override
+    public void phaseStarted(ConversionPhase phase, String subsystemName) {
+        // Drop the event for an earlier phase which failed, if any
+        current.remove();
+        ConversionPhaseEvent event = new ConversionPhaseEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            current.set(event);
+        }
+    }
+
+    @Override
+    public void phaseCompleted(PhaseMetrics metrics) {
+        ConversionPhaseEvent event = current.get();
+        if (event == null) {
+            return;
+        }
+        current.remove();
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = metrics.getPhase().name();
+            event.subsystemName = metrics.getSubsystemName();
+            event.operationCount = metrics.getOperationCount();
+            event.documentSize = metrics.getDocumentSize();
+            event.allocatedBytes = metrics.getAllocatedBytes();
+            event.commit();
+        }
+    }
+}
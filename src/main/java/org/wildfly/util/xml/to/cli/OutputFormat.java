@@ -0,0 +1,28 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Writes converted operations to a stream, for use with
+ * {@link WildFlyXmlToCli#convertXmlTo(OutputFormat, OutputStream)}. The formats which come with this library are
+ * found in {@link OutputFormats}.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public interface OutputFormat {
+
+    /**
+     * Writes the operations
+     *
+     * @param operations the converted operations. These must not be modified.
+     * @param converter the converter the operations came from. Formats can use its
+     *                  {@link WildFlyXmlToCli#renderCli(List, Appendable)} and
+     *                  {@link WildFlyXmlToCli#createCompositeOperation(List)} to apply its output options.
+     * @param out the stream to write to. This should be flushed, but not closed.
+     */
+    void write(List<ModelNode> operations, WildFlyXmlToCli converter, OutputStream out) throws IOException;
+}
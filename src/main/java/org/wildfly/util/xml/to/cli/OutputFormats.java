@@ -0,0 +1,96 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * The {@link OutputFormat}s which come with this library. Text formats are written in UTF-8.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class OutputFormats {
+
+    /**
+     * A CLI script, as returned by {@link WildFlyXmlToCli#convertXmlToCli()}
+     */
+    public static final OutputFormat CLI = (operations, converter, out) -> {
+        Writer writer = writer(out);
+        converter.renderCli(operations, writer);
+        writer.flush();
+    };
+
+    /**
+     * A JSON array of the operations, as created by {@link ModelNode#toJSONString(boolean)} in compact form
+     */
+    public static final OutputFormat JSON = (operations, converter, out) ->
+            out.write(toList(operations).toJSONString(true).getBytes(StandardCharsets.UTF_8));
+
+    /**
+     * A DMR list of the operations in the compact text form created by {@link ModelNode#asString()}, which can
+     * be read back with {@link ModelNode#fromString(String)}
+     */
+    public static final OutputFormat DMR_TEXT = (operations, converter, out) -> {
+        Writer writer = writer(out);
+        writer.append('[');
+        boolean first = true;
+        for (ModelNode operation : operations) {
+            if (!first) {
+                writer.append(',');
+            }
+            first = false;
+            CliValueEncoder.writeDmr(operation, writer);
+        }
+        writer.append(']');
+        writer.flush();
+    };
+
+    /**
+     * A DMR list of the operations in the binary form created by {@link ModelNode#writeExternal(java.io.DataOutput)},
+     * which can be read back with {@link ModelNode#readExternal(java.io.DataInput)}. This is the cheapest format
+     * to write and to read.
+     */
+    public static final OutputFormat DMR_BINARY = (operations, converter, out) ->
+            writeExternal(toList(operations), out);
+
+    /**
+     * A single {@code composite} operation in JSON, see {@link WildFlyXmlToCli#convertXmlToCompositeOperation()}
+     */
+    public static final OutputFormat COMPOSITE_JSON = (operations, converter, out) ->
+            out.write(converter.createCompositeOperation(operations).toJSONString(true).getBytes(StandardCharsets.UTF_8));
+
+    /**
+     * A single {@code composite} operation in the DMR binary form, see
+     * {@link WildFlyXmlToCli#convertXmlToCompositeOperation()}
+     */
+    public static final OutputFormat COMPOSITE_DMR_BINARY = (operations, converter, out) ->
+            writeExternal(converter.createCompositeOperation(operations), out);
+
+    private OutputFormats() {
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static ModelNode toList(List<ModelNode> operations) {
+        ModelNode list = new ModelNode().setEmptyList();
+        for (ModelNode operation : operations) {
+            list.add(operation);
+        }
+        return list;
+    }
+
+    private static void writeExternal(ModelNode node, OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        node.writeExternal(dataOut);
+        dataOut.flush();
+    }
+}
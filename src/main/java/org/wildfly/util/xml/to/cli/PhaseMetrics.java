@@ -0,0 +1,84 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measurements for a completed {@link ConversionPhase}
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class PhaseMetrics {
+
+    private final ConversionPhase phase;
+    private final String subsystemName;
+    private final long durationNanos;
+    private final int operationCount;
+    private final long documentSize;
+    private final long allocatedBytes;
+
+    public PhaseMetrics(ConversionPhase phase, String subsystemName, long durationNanos, int operationCount, long documentSize, long allocatedBytes) {
+        this.phase = phase;
+        this.subsystemName = subsystemName;
+        this.durationNanos = durationNanos;
+        this.operationCount = operationCount;
+        this.documentSize = documentSize;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public ConversionPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Gets the name of the subsystem being converted
+     *
+     * @return the subsystem name, or {@code null} when converting several subsystems at once
+     */
+    public String getSubsystemName() {
+        return subsystemName;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of operations the phase produced, or for {@link ConversionPhase#BOOT},
+     * {@link ConversionPhase#EXECUTE} and {@link ConversionPhase#RENDER} the number of operations it worked on
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    /**
+     * Gets the size of the document being converted. This is the number of characters for xml passed in as a
+     * string, and the number of bytes for a file.
+     *
+     * @return the document size, or {@code -1} if it is not known, as is the case for streams
+     */
+    public long getDocumentSize() {
+        return documentSize;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the thread running the phase. Allocations made by other threads,
+     * such as the service container threads while booting, are not included.
+     *
+     * @return the number of bytes, or {@code -1} if the JVM does not support measuring this
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PhaseMetrics{phase=" + phase + ", subsystemName=" + subsystemName + ", durationNanos=" + durationNanos
+                + ", operationCount=" + operationCount + ", documentSize=" + documentSize + ", allocatedBytes=" + allocatedBytes + "}";
+    }
+}
@@ -1,21 +1,41 @@
 package org.wildfly.util.xml.to.cli;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
-import java.net.URL;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
 
 import org.jboss.as.controller.Extension;
 import org.jboss.as.controller.PathAddress;
-import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.descriptions.ModelDescriptionConstants;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
 import org.jboss.dmr.ModelNode;
-import org.jboss.dmr.ModelType;
+import org.wildfly.util.xml.to.cli.impl.ContainerFactory;
+import org.wildfly.util.xml.to.cli.impl.ContainerTracker;
+import org.wildfly.util.xml.to.cli.impl.OperationsDiff;
+import org.wildfly.util.xml.to.cli.impl.ParserCache;
+import org.wildfly.util.xml.to.cli.impl.PhaseTimer;
 import org.wildfly.util.xml.to.cli.impl.Worker;
+import org.wildfly.util.xml.to.cli.impl.XmlInputFactories;
+import org.wildfly.util.xml.to.cli.impl.XmlSource;
 
 /**
  * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
@@ -23,18 +43,57 @@ import org.wildfly.util.xml.to.cli.impl.Worker;
 public class WildFlyXmlToCli {
 
     private final String subsystemName;
-    private final String xml;
+    private final XmlSource xml;
     private final Extension extension;
+    private final List<Extension> extensions;
     private final SubsystemAddStrategy addStrategy;
     private final boolean batchOperations;
+    private final XmlToCliEngine engine;
+    private final ConversionMode conversionMode;
+    private final XMLInputFactory xmlInputFactory;
+    private final ConversionCache cache;
+    private final ParserCache parserCache;
+    private final ConversionListener listener;
+    private final ContainerFactory containerFactory;
+    private final boolean verifyRoundTrip;
+    private final ControllerModels controllerModels;
 
 
     private WildFlyXmlToCli(Builder builder) {
         this.subsystemName = builder.subsystemName;
         this.xml = builder.xml;
         this.extension = builder.extension;
+        this.extensions = new ArrayList<>(builder.extensions);
         this.addStrategy = builder.addStrategy;
         this.batchOperations = builder.batchOperations;
+        this.engine = builder.engine;
+        this.conversionMode = builder.conversionMode;
+        this.xmlInputFactory = builder.xmlInputFactory;
+        this.cache = builder.cache;
+        this.parserCache = builder.parserCache;
+        this.listener = builder.listener;
+        this.containerFactory = builder.containerThreads == 0 ? ContainerFactory.DEFAULT :
+                new ContainerFactory(builder.containerThreads, builder.containerKeepAlive, builder.containerKeepAliveUnit);
+        this.verifyRoundTrip = builder.verifyRoundTrip;
+        this.controllerModels = builder.controllerModels;
+    }
+
+    private WildFlyXmlToCli(WildFlyXmlToCli template, XmlSource xml, XmlToCliEngine engine) {
+        this.subsystemName = template.subsystemName;
+        this.xml = xml;
+        this.extension = template.extension;
+        this.extensions = template.extensions;
+        this.addStrategy = template.addStrategy;
+        this.batchOperations = template.batchOperations;
+        this.engine = engine;
+        this.conversionMode = template.conversionMode;
+        this.xmlInputFactory = template.xmlInputFactory;
+        this.cache = template.cache;
+        this.parserCache = template.parserCache;
+        this.listener = template.listener;
+        this.containerFactory = template.containerFactory;
+        this.verifyRoundTrip = template.verifyRoundTrip;
+        this.controllerModels = template.controllerModels;
     }
 
     public static Builder builder() {
@@ -43,10 +102,22 @@ public class WildFlyXmlToCli {
 
     public static class Builder {
         private String subsystemName;
-        private String xml;
+        private XmlSource xml;
         private Extension extension;
+        private final List<Extension> extensions = new ArrayList<>();
         private SubsystemAddStrategy addStrategy = SubsystemAddStrategy.ADD_IF_NOT_THERE;
         private boolean batchOperations = true;
+        private XmlToCliEngine engine;
+        private ConversionMode conversionMode = ConversionMode.BOOT;
+        private XMLInputFactory xmlInputFactory;
+        private ConversionCache cache;
+        private ParserCache parserCache;
+        private ConversionListener listener;
+        private int containerThreads;
+        private long containerKeepAlive;
+        private TimeUnit containerKeepAliveUnit = TimeUnit.SECONDS;
+        private boolean verifyRoundTrip;
+        private ControllerModels controllerModels = ControllerModels.NONE;
 
         private Builder() {
         }
@@ -57,7 +128,46 @@ public class WildFlyXmlToCli {
         }
 
         public Builder setXml(String xml) {
-            this.xml = xml;
+            this.xml = XmlSource.of(xml);
+            return this;
+        }
+
+        /**
+         * Sets the file to read the xml from. The file is streamed into the parser when converting.
+         *
+         * @param path the file
+         * @return this builder
+         */
+        public Builder setXml(Path path) {
+            if (!Files.exists(path)) {
+                throw new IllegalStateException("Specified xml file does not exist: " + path.toAbsolutePath());
+            }
+            this.xml = XmlSource.of(path);
+            return this;
+        }
+
+        /**
+         * Sets the reader to read the xml from. The reader is streamed into the parser when converting, so it can
+         * only be converted once. Closing the reader is left to the caller.
+         *
+         * @param reader the reader
+         * @return this builder
+         */
+        public Builder setXml(Reader reader) {
+            this.xml = XmlSource.of(reader);
+            return this;
+        }
+
+        /**
+         * Sets the stream to read the xml from. It is decoded with the encoding given by its byte order mark or xml
+         * declaration, or as UTF-8 if there is neither. The stream is fed into the parser when converting, so it can
+         * only be converted once. Closing the stream is left to the caller.
+         *
+         * @param in the stream
+         * @return this builder
+         */
+        public Builder setXml(InputStream in) {
+            this.xml = XmlSource.of(in);
             return this;
         }
 
@@ -79,18 +189,7 @@ public class WildFlyXmlToCli {
             if (!file.exists()) {
                 throw new IllegalStateException("Specified keycloak file does not exist: " + file.getAbsolutePath());
             }
-            URL configURL = file.toURI().toURL();
-
-            StringWriter writer = new StringWriter();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(configURL.openStream(), StandardCharsets.UTF_8))){
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    writer.write(line);
-                    writer.write("\n");
-                }
-            }
-            this.xml = writer.toString();
-            return this;
+            return setXml(file.toPath());
         }
 
         public Builder setExtension(Extension extension) {
@@ -98,135 +197,660 @@ public class WildFlyXmlToCli {
             return this;
         }
 
+        /**
+         * Adds an extension to convert several subsystems in one go. The xml may then contain several subsystems,
+         * or be a full server configuration or a {@code <profile>} from one, in which case the subsystems we have
+         * no extension for are skipped. In either {@link ConversionMode} the subsystems are output so that those
+         * providing capabilities come before those requiring them. This cannot be combined with {@link #setExtension(Extension)} or
+         * {@link #setSubsystemName(String)}.
+         *
+         * @param extension the extension
+         * @return this builder
+         */
+        public Builder addExtension(Extension extension) {
+            this.extensions.add(extension);
+            return this;
+        }
+
+        /**
+         * Adds several extensions, see {@link #addExtension(Extension)}
+         *
+         * @param extensions the extensions
+         * @return this builder
+         */
+        public Builder addExtensions(Collection<? extends Extension> extensions) {
+            this.extensions.addAll(extensions);
+            return this;
+        }
+
+        /**
+         * Adds all the extensions found in the {@code META-INF/services/org.jboss.as.controller.Extension} files
+         * visible to the class loader, see {@link #addExtension(Extension)}
+         *
+         * @param classLoader the class loader
+         * @return this builder
+         */
+        public Builder loadExtensions(ClassLoader classLoader) {
+            for (Extension extension : ServiceLoader.load(Extension.class, classLoader)) {
+                this.extensions.add(extension);
+            }
+            return this;
+        }
+
+        public Builder setConversionMode(ConversionMode conversionMode) {
+            this.conversionMode = conversionMode;
+            return this;
+        }
+
+        /**
+         * Sets the StAX implementation to read the xml with, for example Woodstox or Aalto. The factory is
+         * configured in place as described in {@link XmlInputFactories#configure(XMLInputFactory)}, so it should not
+         * be shared with code needing DTDs or external entities. By default a shared factory from the default
+         * implementation is used.
+         *
+         * @param xmlInputFactory the factory
+         * @return this builder
+         */
+        public Builder setXmlInputFactory(XMLInputFactory xmlInputFactory) {
+            this.xmlInputFactory = xmlInputFactory == null ? null : XmlInputFactories.configure(xmlInputFactory);
+            return this;
+        }
+
+        /**
+         * Sets a cache to look up the CLI script in before converting, and to store it in afterwards. Caching
+         * reads the whole xml into memory to work out the key.
+         *
+         * @param cache the cache
+         * @return this builder
+         */
+        public Builder setCache(ConversionCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets a cache to get the extension's parser from, so that converting several documents with the same
+         * extension instance only sets up its parsers once. Pass the same cache to the builders of the conversions
+         * which should share parsers. By default the parsers are set up for each conversion. This cannot be used
+         * with an engine, which sets up its parser once anyway.
+         *
+         * @param parserCache the cache
+         * @return this builder
+         */
+        public Builder setParserCache(ParserCache parserCache) {
+            this.parserCache = parserCache;
+            return this;
+        }
+
+        /**
+         * Sets a listener to report the time taken by each phase of the conversion to
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder setListener(ConversionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the number of MSC worker threads for each controller's service container. By default MSC sizes the
+         * pool by the number of cores, which adds up when several documents are converted at the same time, for
+         * example with {@link #convertAll(Collection, Executor)}. Setting this bounds the threads each conversion
+         * adds, so that the total grows with the number of conversions running at the same time rather than with
+         * the number of cores.
+         *
+         * @param containerThreads the number of threads, or {@code 0} to let MSC decide
+         * @return this builder
+         */
+        public Builder setContainerThreads(int containerThreads) {
+            this.containerThreads = containerThreads;
+            return this;
+        }
+
+        /**
+         * Sets how long idle MSC worker threads are kept around. This is only used together with
+         * {@link #setContainerThreads(int)}. The default is 30 seconds.
+         *
+         * @param keepAlive the keep alive time
+         * @param unit the unit of the keep alive time
+         * @return this builder
+         */
+        public Builder setContainerKeepAlive(long keepAlive, TimeUnit unit) {
+            this.containerKeepAlive = keepAlive;
+            this.containerKeepAliveUnit = unit;
+            return this;
+        }
+
+        /**
+         * Sets the parts of the server model outside the subsystem which the subsystem references, such as socket
+         * bindings, paths or system properties. These are set up in the controller before the subsystem is added.
+         * By default none are set up, which keeps booting the controller cheap.
+         *
+         * @param controllerModels the models
+         * @return this builder
+         */
+        public Builder setControllerModels(ControllerModels controllerModels) {
+            this.controllerModels = controllerModels == null ? ControllerModels.NONE : controllerModels;
+            return this;
+        }
+
+        /**
+         * Sets whether to check that the booted model marshals back to the input xml, using the subsystem's xml
+         * writer. The subsystem elements are compared ignoring formatting, comments and the order of attributes, and
+         * the conversion fails with an {@link IllegalStateException} describing the first difference if they do
+         * not match. This reads the whole xml into memory and marshals the model, so it is off by default. It
+         * cannot be used with {@link ConversionMode#PARSE_ONLY}.
+         *
+         * @param verifyRoundTrip whether to verify the round trip
+         * @return this builder
+         */
+        public Builder setVerifyRoundTrip(boolean verifyRoundTrip) {
+            this.verifyRoundTrip = verifyRoundTrip;
+            return this;
+        }
+
+        /**
+         * Use an already set up engine for the conversion rather than booting a new controller. The subsystem
+         * name and extension are taken from the engine.
+         *
+         * @param engine the engine
+         * @return this builder
+         */
+        public Builder setEngine(XmlToCliEngine engine) {
+            this.engine = engine;
+            return this;
+        }
+
         public WildFlyXmlToCli build() {
+            validateContainerOptions();
+            if (verifyRoundTrip && conversionMode == ConversionMode.PARSE_ONLY) {
+                throw new IllegalStateException("The round trip can only be verified when booting a controller");
+            }
+            if (!extensions.isEmpty()) {
+                if (extension != null || subsystemName != null) {
+                    throw new IllegalStateException("Use either several extensions, or a single extension and subsystem name");
+                }
+                if (engine != null) {
+                    throw new IllegalStateException("An engine cannot be used with several extensions");
+                }
+                if (conversionMode == null) {
+                    throw new IllegalStateException("No conversion mode set");
+                }
+                return new WildFlyXmlToCli(this);
+            }
+            if (engine != null) {
+                if (subsystemName != null && !subsystemName.equals(engine.getSubsystemName())) {
+                    throw new IllegalStateException("Subsystem name " + subsystemName + " does not match the engine's subsystem name " + engine.getSubsystemName());
+                }
+                if (extension != null && extension != engine.getExtension()) {
+                    throw new IllegalStateException("The extension does not match the engine's extension");
+                }
+                if (xmlInputFactory != null) {
+                    throw new IllegalStateException("The xml input factory should be set on the engine");
+                }
+                if (containerThreads != 0 || containerKeepAlive != 0) {
+                    throw new IllegalStateException("The container options should be set on the engine");
+                }
+                if (controllerModels != ControllerModels.NONE) {
+                    throw new IllegalStateException("The controller models should be set on the engine");
+                }
+                if (parserCache != null) {
+                    throw new IllegalStateException("An engine sets up its parser once, so it cannot use a parser cache");
+                }
+                subsystemName = engine.getSubsystemName();
+                extension = engine.getExtension();
+            }
             if (subsystemName == null) {
                 throw new IllegalStateException("No subsystem name set");
             }
-            if (xml == null) {
-                throw new IllegalStateException("No xml set");
-            }
             if (extension == null) {
                 throw new IllegalStateException("No extension set");
             }
+            if (conversionMode == null) {
+                throw new IllegalStateException("No conversion mode set");
+            }
             return new WildFlyXmlToCli(this);
         }
+
+        private void validateContainerOptions() {
+            if (containerThreads < 0) {
+                throw new IllegalStateException("The number of container threads cannot be negative");
+            }
+            if (containerKeepAlive < 0) {
+                throw new IllegalStateException("The container keep alive time cannot be negative");
+            }
+        }
+    }
+
+    /**
+     * Converts the xml into operations. The returned operations are not shared, so they may be modified.
+     *
+     * @return the operations
+     */
+    public List<ModelNode> convertXmlToOperations() throws Exception {
+        if (xml == null) {
+            throw new IllegalStateException("No xml set");
+        }
+        if (conversionMode == ConversionMode.PARSE_ONLY) {
+            if (engine != null) {
+                return engine.parseXmlToOperations(xml, listener);
+            }
+            try (Worker worker = createWorker()) {
+                return worker.parseXmlToOperations();
+            }
+        }
+        if (engine != null) {
+            return engine.convertXmlToOperations(xml, listener, verifyRoundTrip);
+        }
+        try (Worker worker = createWorker()) {
+            return worker.convertXmlToOperations();
+        }
+    }
+
+    private Worker createWorker() {
+        Worker worker = extensions.isEmpty() ? new Worker(subsystemName, extension, xml) : new Worker(extensions, xml);
+        if (xmlInputFactory != null) {
+            worker.setXmlInputFactory(xmlInputFactory);
+        }
+        worker.setListener(listener);
+        worker.setContainerFactory(containerFactory);
+        worker.setParserCache(parserCache);
+        worker.setVerifyRoundTrip(verifyRoundTrip);
+        worker.setControllerModels(controllerModels);
+        return worker;
     }
 
-    List<ModelNode> convertXmlToOperations() throws Exception {
-        Worker worker = new Worker(subsystemName, extension, xml);
-        return worker.convertXmlToOperations();
+    /**
+     * Gets the number of controller service containers which have not terminated yet. Containers terminate in the
+     * background, so once all conversions have completed, all {@link XmlToCliEngine}s have been closed and
+     * {@link #awaitContainerShutdown(long, TimeUnit)} has returned {@code true}, this should be zero.
+     *
+     * @return the number of live containers
+     */
+    public static int getLiveContainerCount() {
+        return ContainerTracker.getLiveContainerCount();
+    }
+
+    /**
+     * Waits for the controller service containers which are being shut down to terminate. Containers are shut down
+     * in the background once a conversion has its operations, so they may still be terminating when it returns.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return {@code true} if all the containers terminated in time, {@code false} if any are still running, which
+     * includes containers which did not terminate within the shutdown timeout
+     */
+    public static boolean awaitContainerShutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        return ContainerTracker.awaitTermination(timeout, unit);
     }
 
     public String convertXmlToCli() throws Exception {
+        if (cache != null) {
+            return convertXmlToCliCached();
+        }
+        return convertOperationsToCli(convertXmlToOperations());
+    }
+
+    /**
+     * Converts the xml, and writes the CLI script to the passed in target as it is rendered
+     *
+     * @param out the target
+     */
+    public void convertXmlToCli(Appendable out) throws Exception {
+        if (cache != null) {
+            out.append(convertXmlToCliCached());
+            return;
+        }
+        writeCli(convertXmlToOperations(), out);
+    }
+
+    /**
+     * Converts the xml, and writes the CLI script to a file as it is rendered. The script is written to a temporary
+     * file in the same directory, which replaces the file once it is complete, so the file is left alone if the
+     * conversion fails.
+     *
+     * @param out the file
+     */
+    public void convertXmlToCli(Path out) throws Exception {
+        String cli = cache == null ? null : convertXmlToCliCached();
+        List<ModelNode> operations = cli == null ? convertXmlToOperations() : null;
+        Path directory = out.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(directory, out.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                if (cli != null) {
+                    writer.write(cli);
+                } else {
+                    writeCli(operations, writer);
+                }
+            }
+            try {
+                Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Converts the xml into a single {@code composite} operation containing all the converted operations, which
+     * can be executed with {@code ModelControllerClient.execute()} without going through the CLI.
+     * <p>
+     * A composite cannot check whether the subsystem already exists, so {@link SubsystemAddStrategy#ADD_IF_NOT_THERE}
+     * adds the subsystem like {@link SubsystemAddStrategy#ADD}. Use {@link SubsystemAddStrategy#SKIP} if the
+     * subsystem is already there. The batch setting does not apply, since a composite is always atomic.
+     *
+     * @return the composite operation
+     */
+    public ModelNode convertXmlToCompositeOperation() throws Exception {
+        return createCompositeOperation(convertXmlToOperations());
+    }
+
+    /**
+     * Converts the xml into a single {@code composite} operation as described in
+     * {@link #convertXmlToCompositeOperation()}, and writes it to the stream in the given encoding. The stream
+     * is not closed.
+     *
+     * @param out the stream
+     * @param encoding the encoding
+     */
+    public void convertXmlToCompositeOperation(OutputStream out, CompositeEncoding encoding) throws Exception {
+        convertXmlTo(encoding.getFormat(), out);
+    }
+
+    /**
+     * Converts the xml, and writes the operations to the stream in the given format. The stream is not closed.
+     * The cache, if set, is not used.
+     *
+     * @param format the format
+     * @param out the stream
+     */
+    public void convertXmlTo(OutputFormat format, OutputStream out) throws Exception {
         List<ModelNode> operations = convertXmlToOperations();
+        PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.RENDER, subsystemName, null);
+        format.write(operations, this, out);
+        timer.stop(operations.size());
+    }
+
+    /**
+     * Creates the {@code composite} operation described in {@link #convertXmlToCompositeOperation()} from already
+     * converted operations, using the add strategy of this instance. The operations are not modified.
+     *
+     * @param operations the operations
+     * @return the composite operation
+     */
+    public ModelNode createCompositeOperation(List<ModelNode> operations) {
+        ModelNode composite = Util.createEmptyOperation(ModelDescriptionConstants.COMPOSITE, PathAddress.EMPTY_ADDRESS);
+        ModelNode steps = composite.get(ModelDescriptionConstants.STEPS).setEmptyList();
+        for (ModelNode op : operations) {
+            if (addStrategy == SubsystemAddStrategy.SKIP && isSubsystemAdd(op)) {
+                continue;
+            }
+            steps.add(op);
+        }
+        return composite;
+    }
+
+    private String convertXmlToCliCached() throws Exception {
+        if (xml == null) {
+            throw new IllegalStateException("No xml set");
+        }
+        String content = xml.readFully();
+        List<Class<?>> extensionClasses = new ArrayList<>();
+        if (extensions.isEmpty()) {
+            extensionClasses.add(extension.getClass());
+        } else {
+            for (Extension ext : extensions) {
+                extensionClasses.add(ext.getClass());
+            }
+        }
+        String key = ConversionCache.key(content, extensionClasses, Arrays.asList(
+                String.valueOf(subsystemName), addStrategy.name(), String.valueOf(batchOperations), conversionMode.name(),
+                String.valueOf(verifyRoundTrip)));
+        String cli = cache.get(key);
+        if (cli == null) {
+            WildFlyXmlToCli converter = new WildFlyXmlToCli(this, XmlSource.of(content), engine);
+            cli = converter.convertOperationsToCli(converter.convertXmlToOperations());
+            cache.put(key, cli);
+        }
+        return cli;
+    }
+
+    /**
+     * Converts several files in parallel, using the settings of this instance. The xml set on the builder, if
+     * any, is ignored.
+     * <p>
+     * Unless an engine has been set, the documents for a single extension are converted by a temporary
+     * {@link XmlToCliEngine}, so that the parser is only set up once and booted controllers are reused. This differs
+     * from {@link #convertXmlToCli()}, which boots a new controller with the parsed operations as its boot
+     * operations. The engine instead executes them against a controller which has already booted, and removes the
+     * subsystem again once it has been described. Both give the same script. A controller which is left in any state
+     * other than running is discarded rather than reused. When several extensions are set, each document boots a
+     * controller of its own, as with {@link #convertXmlToCli()}.
+     *
+     * @param paths the files to convert
+     * @param executor the executor to run the conversions on
+     * @return the result for each file, in the same order as {@code paths}. Each document succeeds or fails on
+     * its own.
+     */
+    public List<ConversionResult> convertAll(Collection<Path> paths, Executor executor) throws Exception {
+        if (paths.isEmpty()) {
+            return new ArrayList<>();
+        }
+        XmlToCliEngine batchEngine = engine;
+        try {
+            if (batchEngine == null && extensions.isEmpty()) {
+                batchEngine = XmlToCliEngine.builder()
+                        .setSubsystemName(subsystemName)
+                        .setExtension(extension)
+                        .setXmlInputFactory(xmlInputFactory)
+                        .setContainerFactory(containerFactory)
+                        .setControllerModels(controllerModels)
+                        .setPoolSize(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()))
+                        .build();
+            }
+            List<CompletableFuture<ConversionResult>> futures = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                WildFlyXmlToCli converter = new WildFlyXmlToCli(this, XmlSource.of(path), batchEngine);
+                futures.add(CompletableFuture.supplyAsync(() -> converter.convertForBatch(path), executor));
+            }
+            List<ConversionResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<ConversionResult> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } finally {
+            if (batchEngine != engine) {
+                batchEngine.close();
+            }
+        }
+    }
+
+    /**
+     * Converts two versions of a document, and creates a CLI script containing only the operations needed to
+     * get from the old version to the new one, using the settings of this instance. The xml set on the builder,
+     * if any, is ignored. See {@link OperationsDiff#diff(List, List, ImmutableManagementResourceRegistration)} for how
+     * the versions are compared.
+     *
+     * @param oldXml the xml which has already been applied
+     * @param newXml the xml to update to
+     * @return the CLI script, which is empty if there are no differences
+     */
+    public String diff(String oldXml, String newXml) throws Exception {
+        return diff(XmlSource.of(oldXml), XmlSource.of(newXml));
+    }
+
+    /**
+     * Converts two versions of a document read from files, see {@link #diff(String, String)}
+     *
+     * @param oldXml the file containing the xml which has already been applied
+     * @param newXml the file containing the xml to update to
+     * @return the CLI script, which is empty if there are no differences
+     */
+    public String diff(Path oldXml, Path newXml) throws Exception {
+        return diff(XmlSource.of(oldXml), XmlSource.of(newXml));
+    }
+
+    private String diff(XmlSource oldXml, XmlSource newXml) throws Exception {
+        List<ModelNode> oldOperations = new WildFlyXmlToCli(this, oldXml, engine).convertXmlToOperations();
+        List<ModelNode> newOperations = new WildFlyXmlToCli(this, newXml, engine).convertXmlToOperations();
+        ImmutableManagementResourceRegistration rootRegistration;
+        if (engine != null) {
+            rootRegistration = engine.getRegistrationModel();
+        } else {
+            try (Worker worker = createWorker()) {
+                rootRegistration = worker.createRegistrationModel();
+            }
+        }
+        return convertOperationsToCli(OperationsDiff.diff(oldOperations, newOperations, rootRegistration));
+    }
+
+    private ConversionResult convertForBatch(Path path) {
+        try {
+            return ConversionResult.success(path, convertXmlToCli());
+        } catch (Exception e) {
+            return ConversionResult.failure(path, e);
+        }
+    }
+
+    /**
+     * Renders the operations as a CLI script. The operations are not modified, so they can be rendered again.
+     *
+     * @param operations the operations
+     * @return the CLI script
+     */
+    String convertOperationsToCli(List<ModelNode> operations) {
         StringBuilder sb = new StringBuilder();
+        try {
+            writeCli(operations, sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    private void writeCli(List<ModelNode> operations, Appendable out) throws IOException {
+        PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.RENDER, subsystemName, null);
+        renderCli(operations, out);
+        timer.stop(operations.size());
+    }
+
+    /**
+     * Renders already converted operations as a CLI script, using the add strategy and batch setting of this
+     * instance. The operations are not modified, so they can be rendered again.
+     *
+     * @param operations the operations
+     * @param out where to write the script
+     */
+    public void renderCli(List<ModelNode> operations, Appendable out) throws IOException {
         if (operations.size() > 0) {
+            CliAddressRenderer addresses = new CliAddressRenderer();
             boolean addedBatch = false;
-            if (batchOperations && addStrategy != SubsystemAddStrategy.ADD_IF_NOT_THERE) {
-                // ADD_IF_NOT_THERE uses an if block which does not work inside a batch, so delay adding that
-                sb.append("batch\n\n");
-                addedBatch = true;
-            }
-            for (ModelNode addOp : operations) {
-                if (isSubsystemAdd(addOp)) {
-                    String ssAdd = createSubsystemAddOpCli(addOp);
-                    if (ssAdd != null) {
-                        sb.append(ssAdd);
+            if (batchOperations && addStrategy == SubsystemAddStrategy.ADD_IF_NOT_THERE) {
+                // ADD_IF_NOT_THERE uses an if block which does not work inside a batch, so add the subsystems
+                // before starting the batch. There may be several of them if converting a whole profile.
+                List<ModelNode> batched = new ArrayList<>(operations.size());
+                for (ModelNode addOp : operations) {
+                    if (isSubsystemAdd(addOp)) {
+                        writeSubsystemAddOpCli(addOp, addresses, out);
+                        out.append("\n\n");
+                    } else {
+                        batched.add(addOp);
                     }
-                } else {
-                    if (!addedBatch && batchOperations && addStrategy == SubsystemAddStrategy.ADD_IF_NOT_THERE) {
-                        sb.append("batch\n\n");
+                }
+                for (ModelNode addOp : batched) {
+                    if (!addedBatch) {
+                        out.append("batch\n\n");
                         addedBatch = true;
                     }
-                    sb.append(createCLIOperation(addOp));
+                    writeCLIOperation(addOp, addresses, out);
+                    out.append("\n\n");
+                }
+            } else {
+                if (batchOperations) {
+                    out.append("batch\n\n");
+                    addedBatch = true;
+                }
+                for (ModelNode addOp : operations) {
+                    if (isSubsystemAdd(addOp)) {
+                        writeSubsystemAddOpCli(addOp, addresses, out);
+                    } else {
+                        writeCLIOperation(addOp, addresses, out);
+                    }
+                    out.append("\n\n");
                 }
-                sb.append("\n\n");
             }
             if (addedBatch) {
-                sb.append("batch\n\n");
+                out.append("batch\n\n");
             }
         }
-
-        return sb.toString();
     }
 
     private boolean isSubsystemAdd(ModelNode addOp) {
-        PathAddress addr = PathAddress.pathAddress(addOp.get("address"));
+        PathAddress addr = getAddress(addOp);
         if (addr.size() == 1 && addr.getLastElement().getKey().equals("subsystem")) {
-            if (addOp.get("operation").asString().equals("add")) {
+            if (addOp.has("operation") && addOp.require("operation").asString().equals("add")) {
                 return true;
             }
         }
         return false;
     }
 
-    private String createSubsystemAddOpCli(ModelNode addOp) {
-        PathAddress addr = PathAddress.pathAddress(addOp.get("address"));
-        StringBuilder sb = new StringBuilder();
+    private void writeSubsystemAddOpCli(ModelNode addOp, CliAddressRenderer addresses, Appendable out) throws IOException {
+        PathAddress addr = getAddress(addOp);
         switch (addStrategy) {
             case SKIP:
-                return null;
+                break;
             case ADD:
-                sb.append(createCLIOperation(addOp));
+                writeCLIOperation(addOp, addresses, out);
                 break;
             case ADD_IF_NOT_THERE:
-                sb.append("if (outcome != success) of " + createCLIAddress(addr) + ":read-resource()");
-                sb.append("\n");
-                sb.append("  " + createCLIOperation(addOp));
-                sb.append("\n");
-                sb.append("end-if");
+                out.append("if (outcome != success) of ");
+                addresses.render(addr, out);
+                out.append(":read-resource()");
+                out.append("\n");
+                out.append("  ");
+                writeCLIOperation(addOp, addresses, out);
+                out.append("\n");
+                out.append("end-if");
                 break;
         }
-        return sb.toString();
     }
 
-    private String createCLIOperation(ModelNode operation) {
-        ModelNode opNameNode = operation.remove("operation");
-        ModelNode addrNode = operation.remove("address");
+    private void writeCLIOperation(ModelNode operation, CliAddressRenderer addresses, Appendable out) throws IOException {
+        // Only read from the operation, so that the same operations can be rendered more than once
+        ModelNode opNameNode = operation.require("operation");
 
-        StringBuilder sb = new StringBuilder();
         // TODO change back when https://issues.jboss.org/browse/WFCORE-4570 is fixed
-        //sb.append(PathAddress.pathAddress(addrNode).toCLIStyleString());
-        sb.append(createCLIAddress(PathAddress.pathAddress(addrNode)));
-        sb.append(":");
-        sb.append(opNameNode.asString());
-        sb.append("(");
-        sb.append(createParameters(operation));
-        sb.append(")");
-
-        return sb.toString();
+        //out.append(getAddress(operation).toCLIStyleString());
+        addresses.render(getAddress(operation), out);
+        out.append(":");
+        out.append(opNameNode.asString());
+        out.append("(");
+        writeParameters(operation, out);
+        out.append(")");
     }
 
-    private String createCLIAddress(PathAddress address) {
-        // We could have used PathAddress.toCLIStyleString() but keycloak uses some strange path element
-        // values in some cases, which need quoting. So to be safe we quote values containing
-        // '/' or '='
-        // https://issues.jboss.org/browse/WFCORE-4570
-        StringBuilder sb = new StringBuilder();
-
-        for (Iterator<PathElement> it = address.iterator(); it.hasNext() ; ) {
-            PathElement element = it.next();
-            sb.append("/");
-            sb.append(element.getKey());
-            sb.append("=");
-            boolean quote = element.getValue().contains("/") || element.getValue().contains("=");
-            if (quote) {
-                sb.append("\"");
-            }
-            sb.append(element.getValue());
-            if (quote) {
-                sb.append("\"");
-            }
-        }
-        return sb.toString();
+    /**
+     * Gets the address of an operation without adding an {@code address} to it, since {@link ModelNode#get(String)}
+     * creates the keys it does not find. Operations without one are for the root resource.
+     */
+    private static PathAddress getAddress(ModelNode operation) {
+        return operation.has("address") ? PathAddress.pathAddress(operation.require("address")) : PathAddress.EMPTY_ADDRESS;
     }
 
-    private String createParameters(ModelNode operation) {
-        StringBuilder sb = new StringBuilder();
+    private void writeParameters(ModelNode operation, Appendable out) throws IOException {
         boolean first = true;
 
         for (String key : operation.keys()) {
-            ModelNode valueNode = operation.get(key);
+            if (key.equals("operation") || key.equals("address")) {
+                continue;
+            }
+            ModelNode valueNode = operation.require(key);
             if (!valueNode.isDefined()) {
                 continue;
             }
@@ -234,31 +858,12 @@ public class WildFlyXmlToCli {
             if (first) {
                 first = false;
             } else {
-                sb.append(", ");
-            }
-            sb.append(key);
-            sb.append("=");
-            sb.append(createParameterValue(valueNode));
-        }
-        return sb.toString();
-    }
-
-    private String createParameterValue(ModelNode valueNode) {
-        StringBuilder sb = new StringBuilder();
-        final boolean complexType = ModelType.OBJECT.equals(valueNode.getType()) || ModelType.LIST.equals(valueNode.getType())
-                || ModelType.PROPERTY.equals(valueNode.getType());
-        final String strValue = valueNode.asString();
-        if (!complexType) {
-            sb.append("\"");
-            if (!strValue.isEmpty() && strValue.charAt(0) == '$') {
-                sb.append('\\');
+                out.append(", ");
             }
+            out.append(key);
+            out.append("=");
+            CliValueEncoder.write(valueNode, out);
         }
-        sb.append(strValue);
-        if (!complexType) {
-            sb.append('"');
-        }
-        return sb.toString();
     }
 
     public enum SubsystemAddStrategy {
@@ -267,4 +872,49 @@ public class WildFlyXmlToCli {
         ADD_IF_NOT_THERE
     }
 
+    /**
+     * How {@link #convertXmlToCompositeOperation(OutputStream, CompositeEncoding)} encodes the composite operation.
+     * Each encoding is written by one of the composite {@link OutputFormats}.
+     */
+    public enum CompositeEncoding {
+        /**
+         * Compact JSON, as created by {@link ModelNode#toJSONString(boolean)}
+         */
+        JSON(OutputFormats.COMPOSITE_JSON),
+        /**
+         * The DMR binary encoding, as created by {@link ModelNode#writeExternal(java.io.DataOutput)}, which can be
+         * read back with {@link ModelNode#readExternal(java.io.DataInput)}
+         */
+        DMR_BINARY(OutputFormats.COMPOSITE_DMR_BINARY);
+
+        private final OutputFormat format;
+
+        CompositeEncoding(OutputFormat format) {
+            this.format = format;
+        }
+
+        /**
+         * Gets the output format writing the composite operation in this encoding
+         *
+         * @return the format
+         */
+        public OutputFormat getFormat() {
+            return format;
+        }
+    }
+
+    public enum ConversionMode {
+        /**
+         * Boot a controller with the parsed operations, and describe the resulting model to get the operations.
+         * This is the default, and gives operations in canonical form.
+         */
+        BOOT,
+        /**
+         * Use the operations created by the parser as they are. Only the resource addresses and operation names
+         * are checked against the extension's registrations, and no controller is booted. This is much faster, but
+         * should only be used for extensions whose parsers create operations in canonical form.
+         */
+        PARSE_ONLY
+    }
+
 }
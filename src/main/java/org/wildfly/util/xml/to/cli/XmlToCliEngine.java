@@ -0,0 +1,255 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.wildfly.util.xml.to.cli.impl.ClientExecutors;
+import org.wildfly.util.xml.to.cli.impl.ContainerFactory;
+import org.wildfly.util.xml.to.cli.impl.ReusableWorker;
+import org.wildfly.util.xml.to.cli.impl.XmlInputFactories;
+import org.wildfly.util.xml.to.cli.impl.XmlSource;
+
+/**
+ * A long-lived conversion engine for a single extension and subsystem. The parser and the model controller are
+ * set up once and kept around, so that converting several documents only pays the boot cost once. The engine
+ * can be passed in to {@link WildFlyXmlToCli.Builder#setEngine(XmlToCliEngine)} to control the output options,
+ * and must be closed once it is no longer needed.
+ * <p>
+ * The engine is thread safe. Each concurrent conversion uses its own controller, taken from a pool of pre-booted
+ * controllers whose size is set with {@link Builder#setPoolSize(int)}.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class XmlToCliEngine implements AutoCloseable {
+
+    private final String subsystemName;
+    private final Extension extension;
+    private final ReusableWorker worker;
+    // Only set if the engine created the executor, and so has to shut it down
+    private final ExecutorService ownedExecutor;
+
+    private XmlToCliEngine(Builder builder) throws Exception {
+        this.subsystemName = builder.subsystemName;
+        this.extension = builder.extension;
+        this.ownedExecutor = builder.clientExecutor == null ? ClientExecutors.create(builder.virtualThreads) : null;
+        ExecutorService clientExecutor = ownedExecutor == null ? builder.clientExecutor : ownedExecutor;
+        ContainerFactory containerFactory = builder.createContainerFactory();
+        try {
+            this.worker = new ReusableWorker(subsystemName, extension, builder.poolSize, clientExecutor, containerFactory,
+                    builder.controllerModels);
+        } catch (Exception | Error e) {
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdownNow();
+            }
+            throw e;
+        }
+        if (builder.xmlInputFactory != null) {
+            worker.setXmlInputFactory(builder.xmlInputFactory);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getSubsystemName() {
+        return subsystemName;
+    }
+
+    public Extension getExtension() {
+        return extension;
+    }
+
+    /**
+     * Converts the xml using the default output options.
+     *
+     * @param xml the subsystem xml
+     * @return the CLI script
+     */
+    public String convertXmlToCli(String xml) throws Exception {
+        return WildFlyXmlToCli.builder()
+                .setEngine(this)
+                .setXml(xml)
+                .build()
+                .convertXmlToCli();
+    }
+
+    List<ModelNode> convertXmlToOperations(XmlSource xml, ConversionListener listener, boolean verifyRoundTrip) throws Exception {
+        return worker.convertXmlToOperations(xml, listener, verifyRoundTrip);
+    }
+
+    List<ModelNode> parseXmlToOperations(XmlSource xml, ConversionListener listener) throws Exception {
+        return worker.parseXmlToOperations(xml, listener);
+    }
+
+    ImmutableManagementResourceRegistration getRegistrationModel() {
+        return worker.getRegistrationModel();
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            worker.close();
+        } finally {
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdownNow();
+            }
+        }
+    }
+
+    public static class Builder {
+        private String subsystemName;
+        private Extension extension;
+        private int poolSize = 1;
+        private XMLInputFactory xmlInputFactory;
+        private ExecutorService clientExecutor;
+        private boolean virtualThreads;
+        private int containerThreads;
+        private long containerKeepAlive;
+        private TimeUnit containerKeepAliveUnit = TimeUnit.SECONDS;
+        private ContainerFactory containerFactory;
+        private ControllerModels controllerModels = ControllerModels.NONE;
+
+        private Builder() {
+        }
+
+        public Builder setSubsystemName(String subsystemName) {
+            this.subsystemName = subsystemName;
+            return this;
+        }
+
+        public Builder setExtension(Extension extension) {
+            this.extension = extension;
+            return this;
+        }
+
+        /**
+         * Sets the number of pre-booted controllers to keep ready. This should be set to the number of threads
+         * expected to convert documents at the same time. The default is 1.
+         *
+         * @param poolSize the pool size
+         * @return this builder
+         */
+        public Builder setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Sets the StAX implementation to read the xml with, see
+         * {@link WildFlyXmlToCli.Builder#setXmlInputFactory(XMLInputFactory)}. The factory is configured in place.
+         *
+         * @param xmlInputFactory the factory
+         * @return this builder
+         */
+        public Builder setXmlInputFactory(XMLInputFactory xmlInputFactory) {
+            this.xmlInputFactory = xmlInputFactory == null ? null : XmlInputFactories.configure(xmlInputFactory);
+            return this;
+        }
+
+        /**
+         * Sets the executor the controllers use to hand over the input streams attached to operations. The engine
+         * does not shut it down. If not set the engine creates its own executor, which is shut down when the
+         * engine is closed.
+         *
+         * @param clientExecutor the executor
+         * @return this builder
+         */
+        public Builder setClientExecutor(ExecutorService clientExecutor) {
+            this.clientExecutor = clientExecutor;
+            return this;
+        }
+
+        /**
+         * Sets whether the executor created by the engine should run tasks on virtual threads. This needs Java 21
+         * or later, and is ignored on older JVMs or if an executor is passed in with
+         * {@link #setClientExecutor(ExecutorService)}. The default is {@code false}.
+         *
+         * @param virtualThreads whether to use virtual threads
+         * @return this builder
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Sets the number of MSC worker threads for each controller's service container, see
+         * {@link WildFlyXmlToCli.Builder#setContainerThreads(int)}
+         *
+         * @param containerThreads the number of threads, or {@code 0} to let MSC decide
+         * @return this builder
+         */
+        public Builder setContainerThreads(int containerThreads) {
+            this.containerThreads = containerThreads;
+            return this;
+        }
+
+        /**
+         * Sets how long idle MSC worker threads are kept around, see
+         * {@link WildFlyXmlToCli.Builder#setContainerKeepAlive(long, TimeUnit)}
+         *
+         * @param keepAlive the keep alive time
+         * @param unit the unit of the keep alive time
+         * @return this builder
+         */
+        public Builder setContainerKeepAlive(long keepAlive, TimeUnit unit) {
+            this.containerKeepAlive = keepAlive;
+            this.containerKeepAliveUnit = unit;
+            return this;
+        }
+
+        /**
+         * Sets the parts of the model outside the subsystem to set up in the controllers, see
+         * {@link WildFlyXmlToCli.Builder#setControllerModels(ControllerModels)}
+         *
+         * @param controllerModels the models
+         * @return this builder
+         */
+        public Builder setControllerModels(ControllerModels controllerModels) {
+            this.controllerModels = controllerModels == null ? ControllerModels.NONE : controllerModels;
+            return this;
+        }
+
+        // Used by WildFlyXmlToCli.convertAll() so that the batch engine uses the caller's factory
+        Builder setContainerFactory(ContainerFactory containerFactory) {
+            this.containerFactory = containerFactory;
+            return this;
+        }
+
+        private ContainerFactory createContainerFactory() {
+            if (containerFactory != null) {
+                return containerFactory;
+            }
+            if (containerThreads == 0) {
+                return ContainerFactory.DEFAULT;
+            }
+            return new ContainerFactory(containerThreads, containerKeepAlive, containerKeepAliveUnit);
+        }
+
+        public XmlToCliEngine build() throws Exception {
+            if (subsystemName == null) {
+                throw new IllegalStateException("No subsystem name set");
+            }
+            if (extension == null) {
+                throw new IllegalStateException("No extension set");
+            }
+            if (poolSize < 1) {
+                throw new IllegalStateException("The pool size must be at least 1");
+            }
+            if (containerThreads < 0) {
+                throw new IllegalStateException("The number of container threads cannot be negative");
+            }
+            if (containerKeepAlive < 0) {
+                throw new IllegalStateException("The container keep alive time cannot be negative");
+            }
+            return new XmlToCliEngine(this);
+        }
+    }
+}
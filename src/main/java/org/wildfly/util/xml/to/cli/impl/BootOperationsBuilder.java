@@ -51,6 +51,12 @@ class BootOperationsBuilder {
         return this;
     }
 
+    public BootOperationsBuilder setBootOperations(List<ModelNode> bootOperations) {
+        validateNotAlreadyBuilt();
+        this.bootOperations = bootOperations;
+        return this;
+    }
+
     public void validateNotAlreadyBuilt() {
         if (built) {
             throw new IllegalStateException("Already built");
@@ -0,0 +1,98 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used by the controller clients which execute operations with attached input streams. A
+ * client hands the streams over on a separate thread, so rather than creating and tearing down a thread pool per
+ * operation the controllers share one executor.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ClientExecutors {
+
+    private static final AtomicInteger executorCounter = new AtomicInteger();
+
+    private ClientExecutors() {
+    }
+
+    /**
+     * Gets the executor shared by conversions which have not been given one of their own. Its threads are daemon
+     * threads, and it is never shut down.
+     *
+     * @return the shared executor
+     */
+    static ExecutorService getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * Creates a new executor, which must be shut down by the caller once it is no longer needed
+     *
+     * @param virtualThreads whether to run each task on a new virtual thread. This needs Java 21 or later; on
+     *                       older JVMs a pool of daemon platform threads is used instead
+     * @return the executor
+     */
+    public static ExecutorService create(boolean virtualThreads) {
+        if (virtualThreads) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return createPlatformThreadExecutor();
+    }
+
+    /**
+     * Checks whether the JVM supports virtual threads
+     *
+     * @return {@code true} if {@link #create(boolean)} can use virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.FACTORY != null;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        Method factory = VirtualThreads.FACTORY;
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createPlatformThreadExecutor() {
+        final String prefix = "xml-to-cli-client" + executorCounter.incrementAndGet() + "-";
+        final AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, prefix + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static final class DefaultHolder {
+        private static final ExecutorService DEFAULT = createPlatformThreadExecutor();
+    }
+
+    private static final class VirtualThreads {
+        // Looked up reflectively since we compile against Java 8
+        private static final Method FACTORY = findFactory();
+
+        private static Method findFactory() {
+            try {
+                return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.ExtensionContext;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+
+/**
+ * Internal class.
+ * Combines several extensions, so that they can be registered with the parser and controller together.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+class CompositeExtension implements Extension {
+
+    private final List<Extension> extensions;
+
+    CompositeExtension(Collection<Extension> extensions) {
+        this.extensions = new ArrayList<>(extensions);
+    }
+
+    List<Extension> getExtensions() {
+        return Collections.unmodifiableList(extensions);
+    }
+
+    @Override
+    public void initialize(ExtensionContext context) {
+        for (Extension extension : extensions) {
+            extension.initialize(context);
+        }
+    }
+
+    @Override
+    public void initializeParsers(ExtensionParsingContext context) {
+        for (Extension extension : extensions) {
+            extension.initializeParsers(context);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceTarget;
+
+/**
+ * Creates the MSC service containers the controllers are installed in. Each controller gets a container of its own,
+ * whose worker pool MSC sizes by the number of cores by default. The pool size can be set instead, so that the number
+ * of threads grows with the number of controllers running at the same time rather than with the number of cores.
+ * <p>
+ * Containers are not shared between controllers. The controller and the capability services installed while booting
+ * it use fixed service names, so two controllers cannot be in the same container at the same time, and the MSC 1.4
+ * containers used by WildFly Core 9 each create their own worker pool.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ContainerFactory {
+
+    /**
+     * Gives each controller its own container with the MSC default pool size
+     */
+    public static final ContainerFactory DEFAULT = new ContainerFactory(0, 0, TimeUnit.SECONDS);
+
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    private final int threads;
+    private final long keepAlive;
+    private final TimeUnit keepAliveUnit;
+
+    /**
+     * Creates a new factory
+     *
+     * @param threads the number of MSC worker threads per container, or {@code 0} to let MSC decide
+     * @param keepAlive how long idle worker threads are kept around, or {@code 0} for the default of 30 seconds.
+     *                  This is only used if the number of threads is set.
+     * @param keepAliveUnit the unit of the keep alive time
+     */
+    public ContainerFactory(int threads, long keepAlive, TimeUnit keepAliveUnit) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("The number of threads cannot be negative");
+        }
+        if (keepAlive < 0) {
+            throw new IllegalArgumentException("The keep alive time cannot be negative");
+        }
+        this.threads = threads;
+        this.keepAlive = keepAlive;
+        this.keepAliveUnit = keepAliveUnit;
+    }
+
+    /**
+     * Gets a container to install a controller in. The lease must be released once the controller is shut down.
+     *
+     * @param subsystemName the subsystem name, for the events recorded. May be {@code null}
+     * @param extension the extension, for the events recorded. May be {@code null}
+     * @return the lease
+     */
+    Lease acquire(String subsystemName, Extension extension) {
+        String name = "subsystem-test" + counter.incrementAndGet();
+        return new Lease(name, createContainer(name, subsystemName, extension));
+    }
+
+    private ServiceContainer createContainer(String name, String subsystemName, Extension extension) {
+        ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.CONTAINER_CREATE, name, subsystemName, extension);
+        ServiceContainer container;
+        try {
+            //Shutdown on exit is handled by the ContainerTracker rather than by MSC
+            if (threads > 0) {
+                long keepAlive = this.keepAlive > 0 ? this.keepAlive : keepAliveUnit.convert(DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                container = ServiceContainer.Factory.create(name, threads, keepAlive, keepAliveUnit, false);
+            } else {
+                container = ServiceContainer.Factory.create(name, false);
+            }
+        } finally {
+            span.end();
+        }
+        ContainerTracker.register(container);
+        return container;
+    }
+
+    private static CompletableFuture<Void> shutdown(ServiceContainer container) {
+        ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.CONTAINER_SHUTDOWN, container.getName(), null, null);
+        CompletableFuture<Void> future = ContainerTracker.shutdown(container);
+        future.whenComplete((v, t) -> span.end());
+        return future;
+    }
+
+    /**
+     * A container handed out for a single controller
+     */
+    final class Lease {
+        private final String name;
+        private final ServiceContainer container;
+        private final ServiceTarget target;
+
+        private Lease(String name, ServiceContainer container) {
+            this.name = name;
+            this.container = container;
+            this.target = container.subTarget();
+        }
+
+        /**
+         * Gets the name of the controller, which is the container name
+         *
+         * @return the name
+         */
+        String getName() {
+            return name;
+        }
+
+        ServiceContainer getContainer() {
+            return container;
+        }
+
+        ServiceTarget getTarget() {
+            return target;
+        }
+
+        /**
+         * Gives the container back, shutting it down
+         *
+         * @return a future completed once the container has terminated
+         */
+        CompletableFuture<Void> release() {
+            return shutdown(container);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.msc.service.ServiceContainer;
+
+/**
+ * Keeps track of the service containers which have been created for conversions and not yet shut down. This
+ * is used to detect leaked containers, and to shut down any containers still running when the JVM exits.
+ * <p>
+ * Containers are shut down in the background. {@link #shutdown(ServiceContainer)} only starts the shutdown, and
+ * the container's terminate listener completes the returned future, so several containers can terminate at the
+ * same time without holding up the conversion threads or needing a thread each. A container counts as live until
+ * it has terminated, so one which does not terminate shows up as a leak.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ContainerTracker {
+
+    private static final Set<ServiceContainer> liveContainers = ConcurrentHashMap.newKeySet();
+    private static final Map<ServiceContainer, CompletableFuture<Void>> terminatingContainers = new ConcurrentHashMap<>();
+    private static final AtomicBoolean shutdownHookInstalled = new AtomicBoolean();
+    private static final long TERMINATION_TIMEOUT_SECONDS = Long.getLong("xml.to.cli.container.termination.timeout", 30);
+
+    private ContainerTracker() {
+    }
+
+    static void register(ServiceContainer container) {
+        if (shutdownHookInstalled.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(ContainerTracker::shutdownAll, "xml-to-cli-shutdown"));
+        }
+        liveContainers.add(container);
+    }
+
+    static void unregister(ServiceContainer container) {
+        liveContainers.remove(container);
+    }
+
+    /**
+     * Starts shutting down a container. The container counts as live until it has terminated.
+     *
+     * @param container the container
+     * @return a future completed once the container has terminated. If it has not terminated within the timeout
+     * the future is completed exceptionally with a {@link TimeoutException}, and the container is still tracked.
+     */
+    static CompletableFuture<Void> shutdown(ServiceContainer container) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        terminatingContainers.put(container, future);
+        try {
+            container.addTerminateListener(info -> {
+                unregister(container);
+                terminatingContainers.remove(container);
+                future.complete(null);
+            });
+            container.shutdown();
+        } catch (RuntimeException | Error e) {
+            terminatingContainers.remove(container);
+            future.completeExceptionally(e);
+            return future;
+        }
+        ScheduledFuture<?> timeout = Timeout.EXECUTOR.schedule(() -> {
+            if (terminatingContainers.remove(container, future)) {
+                future.completeExceptionally(new TimeoutException("The service container " + container.getName()
+                        + " did not terminate within " + TERMINATION_TIMEOUT_SECONDS + " seconds"));
+            }
+        }, TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        future.whenComplete((v, t) -> timeout.cancel(false));
+        return future;
+    }
+
+    /**
+     * Waits for the containers which are being shut down in the background to terminate
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return {@code true} if all the containers terminated in time, {@code false} if any are still running
+     */
+    public static boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<?>[] futures = terminatingContainers.values().toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(futures).get(timeout, unit);
+        } catch (ExecutionException | TimeoutException e) {
+            // Checked below, by looking at which containers are still running
+        }
+        for (CompletableFuture<?> future : futures) {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of service containers which have been created and not terminated yet
+     *
+     * @return the number of live containers
+     */
+    public static int getLiveContainerCount() {
+        return liveContainers.size();
+    }
+
+    /**
+     * Gets the names of the service containers which have been created and not terminated yet
+     *
+     * @return the names of the live containers
+     */
+    public static Set<String> getLiveContainerNames() {
+        Set<String> names = new TreeSet<>();
+        for (ServiceContainer container : liveContainers) {
+            names.add(container.getName());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    private static void shutdownAll() {
+        for (ServiceContainer container : liveContainers) {
+            container.shutdown();
+        }
+        for (ServiceContainer container : liveContainers) {
+            try {
+                container.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        liveContainers.clear();
+    }
+
+    private static final class Timeout {
+        private static final ScheduledExecutorService EXECUTOR = createExecutor();
+
+        private static ScheduledExecutorService createExecutor() {
+            // Only used to time out containers which do not terminate, so a single thread is enough
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "xml-to-cli-container-timeout");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+}
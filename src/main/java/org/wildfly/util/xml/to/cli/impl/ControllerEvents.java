@@ -0,0 +1,176 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import org.jboss.as.controller.Extension;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Records Java Flight Recorder events for the steps of booting and using a controller, so that they show up in a
+ * recording next to the GC and thread events. The events are named {@code org.wildfly.util.xml.to.cli.*} and only
+ * cost anything while a recording with them enabled is running.
+ * <p>
+ * On a JVM without JFR nothing is recorded. The event classes are only touched from {@link Jfr}, which is not
+ * loaded unless JFR is there.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+final class ControllerEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    enum Kind {
+        CONTAINER_CREATE,
+        SERVICE_INSTALL,
+        BOOT_OPERATIONS,
+        DESCRIBE,
+        CONTAINER_SHUTDOWN
+    }
+
+    private ControllerEvents() {
+    }
+
+    /**
+     * Begins an event. {@link Span#end(int)} must be called once the step is done, whether it worked or not.
+     *
+     * @param kind the kind of event
+     * @param containerName the name of the service container, may be {@code null}
+     * @param subsystemName the subsystem name, may be {@code null} when converting all subsystems
+     * @param extension the extension, may be {@code null}
+     * @return the span to end
+     */
+    static Span begin(Kind kind, String containerName, String subsystemName, Extension extension) {
+        if (!AVAILABLE) {
+            return Span.NONE;
+        }
+        Object event = Jfr.begin(kind, containerName, subsystemName, extension == null ? null : extension.getClass().getName());
+        return event == null ? Span.NONE : new Span(event);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ControllerEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    static final class Span {
+        private static final Span NONE = new Span(null);
+
+        // Kept as an Object so that this class does not need JFR
+        private final Object event;
+
+        private Span(Object event) {
+            this.event = event;
+        }
+
+        void end() {
+            end(-1);
+        }
+
+        /**
+         * Ends the event
+         *
+         * @param operationCount the number of operations involved, or {@code -1} if that does not apply
+         */
+        void end(int operationCount) {
+            if (event != null) {
+                Jfr.end(event, operationCount);
+            }
+        }
+    }
+
+    private static final class Jfr {
+        static Object begin(Kind kind, String containerName, String subsystemName, String extension) {
+            ControllerEvent event;
+            switch (kind) {
+                case CONTAINER_CREATE:
+                    event = new ContainerCreateEvent();
+                    break;
+                case SERVICE_INSTALL:
+                    event = new ServiceInstallEvent();
+                    break;
+                case BOOT_OPERATIONS:
+                    event = new BootOperationsEvent();
+                    break;
+                case DESCRIBE:
+                    event = new DescribeEvent();
+                    break;
+                case CONTAINER_SHUTDOWN:
+                    event = new ContainerShutdownEvent();
+                    break;
+                default:
+                    throw new IllegalArgumentException(kind.name());
+            }
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.containerName = containerName;
+            event.subsystemName = subsystemName;
+            event.extension = extension;
+            event.begin();
+            return event;
+        }
+
+        static void end(Object o, int operationCount) {
+            ControllerEvent event = (ControllerEvent) o;
+            event.end();
+            if (event.shouldCommit()) {
+                event.operationCount = operationCount;
+                event.commit();
+            }
+        }
+    }
+
+    @Category({"WildFly", "XML to CLI"})
+    abstract static class ControllerEvent extends Event {
+
+        @Label("Container")
+        String containerName;
+
+        @Label("Subsystem")
+        String subsystemName;
+
+        @Label("Extension")
+        String extension;
+
+        @Label("Operations")
+        @Description("The number of operations involved, or -1 if that does not apply")
+        int operationCount;
+    }
+
+    @Name("org.wildfly.util.xml.to.cli.ContainerCreate")
+    @Label("Container Create")
+    @Description("Creating the service container for a controller")
+    static class ContainerCreateEvent extends ControllerEvent {
+    }
+
+    @Name("org.wildfly.util.xml.to.cli.ServiceInstall")
+    @Label("Service Install")
+    @Description("Installing the controller services and waiting for the controller to boot")
+    static class ServiceInstallEvent extends ControllerEvent {
+    }
+
+    @Name("org.wildfly.util.xml.to.cli.BootOperations")
+    @Label("Boot Operations")
+    @Description("Executing the boot operations in the controller")
+    static class BootOperationsEvent extends ControllerEvent {
+    }
+
+    @Name("org.wildfly.util.xml.to.cli.Describe")
+    @Label("Describe")
+    @Description("Executing the describe operation for a subsystem")
+    static class DescribeEvent extends ControllerEvent {
+    }
+
+    @Name("org.wildfly.util.xml.to.cli.ContainerShutdown")
+    @Label("Container Shutdown")
+    @Description("Shutting down the service container of a controller")
+    static class ContainerShutdownEvent extends ControllerEvent {
+    }
+}
@@ -40,6 +40,7 @@ import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.VAL
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,9 +60,11 @@ import org.jboss.as.server.services.net.SocketBindingGroupResourceDefinition;
 import org.jboss.as.server.services.net.SpecifiedInterfaceAddHandler;
 import org.jboss.as.server.services.net.SpecifiedInterfaceRemoveHandler;
 import org.jboss.dmr.ModelNode;
+import org.wildfly.util.xml.to.cli.ControllerModels;
 
 /**
- * Allows easy initialization of parts of the model that subsystems frequently need
+ * Allows easy initialization of parts of the model that subsystems frequently need. Only the parts which have had
+ * something added to them are registered and get boot operations.
  *
  * @author <a href="kabir.khan@jboss.com">Kabir Khan</a>
  */
@@ -78,6 +81,33 @@ class ControllerInitializer {
     private volatile PathManagerService pathManager;
     private volatile TestControllerAccessor testControllerAccessor;
 
+    /**
+     * Creates an initializer setting up the declared models
+     *
+     * @param models the models
+     * @return the initializer
+     */
+    static ControllerInitializer create(ControllerModels models) {
+        ControllerInitializer initializer = new ControllerInitializer();
+        for (Map.Entry<String, String> entry : models.getSystemProperties().entrySet()) {
+            initializer.addSystemProperty(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Integer> entry : models.getSocketBindings().entrySet()) {
+            initializer.addSocketBinding(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, ControllerModels.RemoteDestination> entry : models.getRemoteOutboundSocketBindings().entrySet()) {
+            initializer.addRemoteOutboundSocketBinding(entry.getKey(), entry.getValue().getHost(), entry.getValue().getPort());
+        }
+        for (Map.Entry<String, ControllerModels.PathDefinition> entry : models.getPaths().entrySet()) {
+            initializer.addPath(entry.getKey(), entry.getValue().getPath(), entry.getValue().getRelativeTo());
+        }
+        if (models.getBindAddress() != null) {
+            initializer.setBindAddress(models.getBindAddress());
+        }
+        initializer.setPortOffset(models.getPortOffset());
+        return initializer;
+    }
+
     /**
      * Sets the controller being created. Internal use only.
      *
@@ -196,6 +226,9 @@ class ControllerInitializer {
      * @param rootRegistration the root model registry
      */
     protected void initializeModel(Resource rootResource, ManagementResourceRegistration rootRegistration) {
+        if (isEmpty()) {
+            return;
+        }
         initializeSystemPropertiesModel(rootResource, rootRegistration);
         initializeSocketBindingsModel(rootResource, rootRegistration);
         initializePathsModel(rootResource, rootRegistration);
@@ -207,6 +240,9 @@ class ControllerInitializer {
      * @return the additional boot operations
      */
     protected List<ModelNode> initializeBootOperations(){
+        if (isEmpty()) {
+            return Collections.emptyList();
+        }
         List<ModelNode> ops = new ArrayList<ModelNode>();
         initializeSystemPropertiesOperations(ops);
         initializePathsOperations(ops);
@@ -215,6 +251,10 @@ class ControllerInitializer {
         return ops;
     }
 
+    private boolean isEmpty() {
+        return systemProperties.isEmpty() && socketBindings.isEmpty() && outboundSocketBindings.isEmpty() && paths.isEmpty();
+    }
+
     /**
      * Initializes the system properties part of the model
      *
@@ -242,11 +282,8 @@ class ControllerInitializer {
 
         rootResource.getModel().get(INTERFACE);
         rootResource.getModel().get(SOCKET_BINDING_GROUP);
-        MethodHandles.Lookup lookup = MethodHandles.lookup();
-
         try {
-             //= lookup.findConstructor(InterfaceDefinition.class, MethodType.methodType(void.class, InterfaceAddHandler.class, OperationStepHandler.class, boolean.class, boolean.class));
-            MethodHandle handle = lookup.unreflectConstructor(InterfaceDefinition.class.getConstructors()[0]);
+            MethodHandle handle = InterfaceDefinitionConstructor.get();
             InterfaceDefinition id = (InterfaceDefinition)handle.invoke(SpecifiedInterfaceAddHandler.INSTANCE,
                             SpecifiedInterfaceRemoveHandler.INSTANCE, true, false);
             rootRegistration.registerSubModel(id);
@@ -386,6 +423,24 @@ class ControllerInitializer {
         }
     }
 
+    /**
+     * Looks up the interface definition constructor the first time a socket binding is used, rather than for every
+     * controller
+     */
+    private static final class InterfaceDefinitionConstructor {
+        private static volatile MethodHandle handle;
+
+        static MethodHandle get() throws IllegalAccessException {
+            MethodHandle handle = InterfaceDefinitionConstructor.handle;
+            if (handle == null) {
+                //= lookup.findConstructor(InterfaceDefinition.class, MethodType.methodType(void.class, InterfaceAddHandler.class, OperationStepHandler.class, boolean.class, boolean.class));
+                handle = MethodHandles.lookup().unreflectConstructor(InterfaceDefinition.class.getConstructors()[0]);
+                InterfaceDefinitionConstructor.handle = handle;
+            }
+            return handle;
+        }
+    }
+
     private static class PathInfo {
         private final String name;
         private final String path;
@@ -22,7 +22,9 @@
 package org.wildfly.util.xml.to.cli.impl;
 
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
+import org.jboss.as.controller.ControlledProcessState;
 import org.jboss.as.controller.ModelController.OperationTransactionControl;
 import org.jboss.as.controller.OperationFailedException;
 import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
@@ -47,6 +49,14 @@ interface KernelServices {
      */
     Throwable getBootError();
 
+    /**
+     * Gets the state of the process. Operations which can not take effect until the controller is reloaded or
+     * restarted move it out of the running state.
+     *
+     * @return the process state
+     */
+    ControlledProcessState.State getProcessState();
+
     /**
      * Gets the service container
      *
@@ -67,7 +77,27 @@ interface KernelServices {
 
     ModelNode executeForResult(ModelNode operation, InputStream... inputStreams) throws OperationFailedException;
 
-    void shutdown();
+    /**
+     * Sets whether the model should be marshalled to xml each time it is stored, so that it can be got with
+     * {@link #getPersistedSubsystemXml()}
+     *
+     * @param persistXml whether to marshal the model
+     */
+    void setPersistXml(boolean persistXml);
+
+    /**
+     * Gets the xml the model was last marshalled to
+     *
+     * @return the xml, or {@code null} if the model has not been marshalled
+     */
+    String getPersistedSubsystemXml();
+
+    /**
+     * Starts shutting down the controller's service container. This happens in the background.
+     *
+     * @return a future completed once the container has terminated
+     */
+    CompletableFuture<Void> shutdown();
 
     ImmutableManagementResourceRegistration getRootRegistration();
 
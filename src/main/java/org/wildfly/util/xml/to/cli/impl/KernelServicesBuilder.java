@@ -21,8 +21,14 @@
 */
 package org.wildfly.util.xml.to.cli.impl;
 
+import java.util.List;
+
 import javax.xml.stream.XMLStreamException;
 
+import org.jboss.dmr.ModelNode;
+import org.wildfly.util.xml.to.cli.ConversionListener;
+import org.wildfly.util.xml.to.cli.ConversionPhase;
+
 /**
  * A builder to create a controller and initialize it with the passed in subsystem xml or boot operations.
  *
@@ -37,6 +43,29 @@ interface KernelServicesBuilder {
      */
     KernelServicesBuilder setSubsystemXml(String subsystemXml) throws XMLStreamException;
 
+    /**
+     * Sets the boot operations used to initialize the controller, for when the xml has already been parsed
+     * @param bootOperations the boot operations
+     * @return this builder
+     */
+    KernelServicesBuilder setBootOperations(List<ModelNode> bootOperations);
+
+    /**
+     * Sets whether the model should be marshalled back to xml, see {@link KernelServices#getPersistedSubsystemXml()}.
+     * The default is {@code false}.
+     * @param persistXml whether to marshal the model
+     * @return this builder
+     */
+    KernelServicesBuilder setPersistXml(boolean persistXml);
+
+    /**
+     * Sets the listener to report the execution of the boot operations to as {@link ConversionPhase#EXECUTE}.
+     * The default is {@code null}, in which case nothing is reported.
+     * @param listener the listener, may be {@code null}
+     * @return this builder
+     */
+    KernelServicesBuilder setListener(ConversionListener listener);
+
     /**
      * Creates the controller and initializes it with the passed in configuration options.
      * @throws IllegalStateException if #build() has already been called
@@ -10,12 +10,11 @@ import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.as.controller.CapabilityRegistry;
+import org.jboss.as.controller.ControlledProcessState;
 import org.jboss.as.controller.Extension;
 import org.jboss.as.controller.ModelController;
 import org.jboss.as.controller.OperationFailedException;
@@ -32,6 +31,8 @@ import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceContainer;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.ServiceTarget;
+import org.wildfly.util.xml.to.cli.ControllerModels;
+import org.wildfly.util.xml.to.cli.ConversionListener;
 
 /**
  * Allows access to the service container and the model controller
@@ -41,6 +42,7 @@ import org.jboss.msc.service.ServiceTarget;
 class KernelServicesImpl implements KernelServices {
 
     private volatile ServiceContainer container;
+    private final ContainerFactory.Lease lease;
     private final TestModelControllerService controllerService;
     private final ModelController controller;
     private final StringConfigurationPersister persister;
@@ -49,19 +51,20 @@ class KernelServicesImpl implements KernelServices {
     protected final ExtensionRegistry extensionRegistry;
     private final boolean successfulBoot;
     private final Throwable bootError;
+    private final ExecutorService clientExecutor;
+    private volatile ModelControllerClient client;
 
-    private static final AtomicInteger counter = new AtomicInteger();
-
-
-    protected KernelServicesImpl(ServiceContainer container,
+    protected KernelServicesImpl(ContainerFactory.Lease lease,
                                  TestModelControllerService controllerService,
                                  StringConfigurationPersister persister,
                                  ManagementResourceRegistration rootRegistration,
                                  String mainSubsystemName,
                                  ExtensionRegistry extensionRegistry,
                                  boolean successfulBoot,
-                                 Throwable bootError) {
-        this.container = container;
+                                 Throwable bootError,
+                                 ExecutorService clientExecutor) {
+        this.container = lease.getContainer();
+        this.lease = lease;
         this.controllerService = controllerService;
         this.controller = controllerService.getValue();
         this.persister = persister;
@@ -71,6 +74,7 @@ class KernelServicesImpl implements KernelServices {
         this.extensionRegistry = extensionRegistry;
         this.successfulBoot = successfulBoot;
         this.bootError = bootError;
+        this.clientExecutor = clientExecutor;
     }
 
     public static KernelServicesImpl create(
@@ -79,8 +83,12 @@ class KernelServicesImpl implements KernelServices {
             List<ModelNode> bootOperations,
             ModelTestParser testParser,
             Extension mainExtension,
-            boolean persistXml) throws Exception {
-        ControllerInitializer controllerInitializer = new ControllerInitializer();
+            boolean persistXml,
+            ConversionListener listener,
+            ExecutorService clientExecutor,
+            ContainerFactory containerFactory,
+            ControllerModels controllerModels) throws Exception {
+        ControllerInitializer controllerInitializer = ControllerInitializer.create(controllerModels);
 
         PathManagerService pathManager = new PathManagerService() {
         };
@@ -88,42 +96,54 @@ class KernelServicesImpl implements KernelServices {
         controllerInitializer.setPathManger(pathManager);
 
         //Initialize the controller
-        ServiceContainer container = ServiceContainer.Factory.create("subsystem-test" + counter.incrementAndGet());
-        ServiceTarget target = container.subTarget();
-        List<ModelNode> extraOps = controllerInitializer.initializeBootOperations();
-        List<ModelNode> allOps = new ArrayList<ModelNode>();
-        if (extraOps != null) {
-            allOps.addAll(extraOps);
-        }
-        allOps.addAll(bootOperations);
-        StringConfigurationPersister persister = new StringConfigurationPersister(allOps, testParser, persistXml);
-        controllerExtensionRegistry.setWriterRegistry(persister);
-        controllerExtensionRegistry.setPathManager(pathManager);
-
+        ContainerFactory.Lease lease = containerFactory.acquire(mainSubsystemName, mainExtension);
+        try {
+            ServiceTarget target = lease.getTarget();
+            List<ModelNode> extraOps = controllerInitializer.initializeBootOperations();
+            List<ModelNode> allOps = new ArrayList<ModelNode>((extraOps == null ? 0 : extraOps.size()) + bootOperations.size());
+            if (extraOps != null) {
+                allOps.addAll(extraOps);
+            }
+            allOps.addAll(bootOperations);
+            StringConfigurationPersister persister = new StringConfigurationPersister(allOps, testParser, persistXml);
+            controllerExtensionRegistry.setWriterRegistry(persister);
+            controllerExtensionRegistry.setPathManager(pathManager);
 
-        CapabilityRegistry capabilityRegistry = new CapabilityRegistry(true);
-        //Use the default implementation of test controller for the main controller, and for tests that don't have another one set up on the classpath
-        TestModelControllerFactory testModelControllerFactory = new TestModelControllerFactory() {
 
-            @Override
-            public TestModelControllerService create(Extension mainExtension, ControllerInitializer controllerInitializer, ExtensionRegistry extensionRegistry, StringConfigurationPersister persister) {
-                return TestModelControllerService.create(mainExtension, controllerInitializer, extensionRegistry, persister, capabilityRegistry);
-            }
+            CapabilityRegistry capabilityRegistry = new CapabilityRegistry(true);
+            //Use the default implementation of test controller for the main controller, and for tests that don't have another one set up on the classpath
+            TestModelControllerFactory testModelControllerFactory = new TestModelControllerFactory() {
 
-        };
+                @Override
+                public TestModelControllerService create(Extension mainExtension, ControllerInitializer controllerInitializer, ExtensionRegistry extensionRegistry, StringConfigurationPersister persister) {
+                    return TestModelControllerService.create(mainExtension, controllerInitializer, extensionRegistry, persister, capabilityRegistry);
+                }
 
-        TestModelControllerService svc = testModelControllerFactory.create(mainExtension, controllerInitializer, controllerExtensionRegistry, persister);
-        ServiceBuilder<ModelController> builder = target.addService(Services.JBOSS_SERVER_CONTROLLER, svc);
-        ServiceName pmSvcName = ServiceName.parse("org.wildfly.management.path-manager"); // we can't reference the capability directly as it's not present in legacy controllers
-        addDependencyViaReflection(builder, pmSvcName); // ensure this is up before the ModelControllerService, as it would be in a real server
-        builder.install();
-        target.addService(pmSvcName, pathManager).addAliases(PathManagerService.SERVICE_NAME).install();
+            };
 
-        //sharedState = svc.state;
-        svc.waitForSetup();
-        //processState.setRunning();
+            TestModelControllerService svc = testModelControllerFactory.create(mainExtension, controllerInitializer, controllerExtensionRegistry, persister);
+            svc.setEventDetails(lease.getName(), mainSubsystemName);
+            svc.setListener(listener);
+            ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.SERVICE_INSTALL, lease.getName(), mainSubsystemName, mainExtension);
+            try {
+                ServiceBuilder<ModelController> builder = target.addService(Services.JBOSS_SERVER_CONTROLLER, svc);
+                ServiceName pmSvcName = ServiceName.parse("org.wildfly.management.path-manager"); // we can't reference the capability directly as it's not present in legacy controllers
+                addDependencyViaReflection(builder, pmSvcName); // ensure this is up before the ModelControllerService, as it would be in a real server
+                builder.install();
+                target.addService(pmSvcName, pathManager).addAliases(PathManagerService.SERVICE_NAME).install();
+
+                //sharedState = svc.state;
+                svc.waitForSetup();
+                //processState.setRunning();
+            } finally {
+                span.end(allOps.size());
+            }
 
-        return new KernelServicesImpl(container, svc, persister, svc.getRootRegistration(), mainSubsystemName, controllerExtensionRegistry, svc.isSuccessfulBoot(), svc.getBootError());
+            return new KernelServicesImpl(lease, svc, persister, svc.getRootRegistration(), mainSubsystemName, controllerExtensionRegistry, svc.isSuccessfulBoot(), svc.getBootError(), clientExecutor);
+        } catch (Exception | Error e) {
+            lease.release();
+            throw e;
+        }
     }
 
     private static void addDependencyViaReflection(final ServiceBuilder builder, final ServiceName dependencyName) {
@@ -158,6 +178,11 @@ class KernelServicesImpl implements KernelServices {
         return bootError;
     }
 
+    @Override
+    public ControlledProcessState.State getProcessState() {
+        return controllerService.getProcessState();
+    }
+
     @Override
     public ServiceContainer getContainer() {
         return container;
@@ -175,24 +200,38 @@ class KernelServicesImpl implements KernelServices {
         if (inputStreams.length == 0) {
             return executeOperation(operation, ModelController.OperationTransactionControl.COMMIT);
         } else {
-            ExecutorService executor = Executors.newCachedThreadPool();
+            OperationBuilder builder = OperationBuilder.create(operation);
+            for (InputStream in : inputStreams) {
+                builder.addInputStream(in);
+            }
+            Operation op = builder.build();
+
             try {
-                ModelControllerClient client = controller.createClient(executor);
-                OperationBuilder builder = OperationBuilder.create(operation);
-                for (InputStream in : inputStreams) {
-                    builder.addInputStream(in);
-                }
-                Operation op = builder.build();
+                return getClient().execute(op);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 
-                try {
-                    return client.execute(op);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+    /**
+     * Gets the client used for operations with attached streams. It is created the first time it is needed, and
+     * runs on the executor shared with the other controllers, so there is no thread pool to create per operation.
+     *
+     * @return the client
+     */
+    private ModelControllerClient getClient() {
+        ModelControllerClient client = this.client;
+        if (client == null) {
+            synchronized (this) {
+                client = this.client;
+                if (client == null) {
+                    client = controller.createClient(clientExecutor);
+                    this.client = client;
                 }
-            } finally {
-                executor.shutdownNow();
             }
         }
+        return client;
     }
 
     @Override
@@ -211,17 +250,31 @@ class KernelServicesImpl implements KernelServices {
     }
 
     @Override
-    public void shutdown() {
-        if (container != null) {
-            container.shutdown();
+    public void setPersistXml(boolean persistXml) {
+        persister.setPersistXml(persistXml);
+    }
+
+    @Override
+    public String getPersistedSubsystemXml() {
+        return persister.getMarshalled();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> shutdown() {
+        if (container == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        container = null;
+        ModelControllerClient client = this.client;
+        if (client != null) {
             try {
-                container.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                client.close();
+            } catch (IOException e) {
+                //we don't care
             }
-            container = null;
-
+            this.client = null;
         }
+        return lease.release();
     }
 
     @Override
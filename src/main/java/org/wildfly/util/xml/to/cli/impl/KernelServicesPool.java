@@ -0,0 +1,163 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Internal class.
+ * A bounded pool of pre-booted controllers for the extension and subsystem of a single {@link ReusableWorker}, so
+ * each {@link org.wildfly.util.xml.to.cli.XmlToCliEngine} has a pool of its own. Borrowing a controller takes an
+ * idle one if available, and kicks off booting replacements in the background so that the next borrower does not
+ * have to wait for a controller to boot. Controllers which did not boot successfully are evicted.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+class KernelServicesPool implements AutoCloseable {
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final SubsystemTestDelegate delegate;
+    private final int maxIdle;
+    private final BlockingQueue<KernelServices> idle;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService refillExecutor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool, and starts pre-booting controllers in the background
+     *
+     * @param delegate the delegate used to boot controllers
+     * @param maxIdle the maximum number of idle pre-booted controllers kept
+     */
+    KernelServicesPool(SubsystemTestDelegate delegate, int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("The pool size must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxIdle = maxIdle;
+        this.idle = new LinkedBlockingQueue<>(maxIdle);
+        final String prefix = "xml-to-cli-pool" + poolCounter.incrementAndGet() + "-refill-";
+        final AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, prefix + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.refillExecutor = Executors.newFixedThreadPool(Math.min(maxIdle, Runtime.getRuntime().availableProcessors()), threadFactory);
+        refill();
+    }
+
+    /**
+     * Borrows a controller from the pool. If no pre-booted controller is available, one is booted on the calling
+     * thread rather than waiting for the background refill.
+     *
+     * @return the controller. It must be handed back with {@link #release(KernelServices)} or {@link #discard(KernelServices)}
+     */
+    KernelServices borrow() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("The pool has been closed");
+        }
+        try {
+            KernelServices services;
+            while ((services = idle.poll()) != null) {
+                if (isHealthy(services)) {
+                    return services;
+                }
+                evict(services);
+            }
+            services = boot();
+            if (!isHealthy(services)) {
+                evict(services);
+                throw new IllegalStateException("The controller could not be booted", services.getBootError());
+            }
+            return services;
+        } finally {
+            refill();
+        }
+    }
+
+    /**
+     * Returns a controller to the pool so it can be borrowed again. If the pool is full, or the controller is
+     * not healthy, it is shut down instead.
+     *
+     * @param services the controller
+     */
+    void release(KernelServices services) {
+        if (closed || !isHealthy(services) || !idle.offer(services)) {
+            evict(services);
+        }
+    }
+
+    /**
+     * Shuts down a borrowed controller which can not be used again, for example since its state could not be reset.
+     *
+     * @param services the controller
+     */
+    void discard(KernelServices services) {
+        evict(services);
+        refill();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        refillExecutor.shutdownNow();
+        try {
+            refillExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        KernelServices services;
+        while ((services = idle.poll()) != null) {
+            evict(services);
+        }
+    }
+
+    private static boolean isHealthy(KernelServices services) {
+        return services.isSuccessfulBoot() && services.getContainer() != null;
+    }
+
+    private KernelServices boot() throws Exception {
+        return delegate.createKernelServicesBuilder().build();
+    }
+
+    private void evict(KernelServices services) {
+        delegate.shutdown(services);
+    }
+
+    private void refill() {
+        while (!closed) {
+            int current = pending.get();
+            if (idle.size() + current >= maxIdle) {
+                return;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                try {
+                    refillExecutor.execute(this::backgroundBoot);
+                } catch (RejectedExecutionException e) {
+                    pending.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void backgroundBoot() {
+        try {
+            KernelServices services = boot();
+            if (closed || !isHealthy(services) || !idle.offer(services)) {
+                evict(services);
+            }
+        } catch (Exception e) {
+            // The next borrower will boot on its own thread and see the error
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.NAME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.VALUE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.WRITE_ATTRIBUTE_OPERATION;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Works out the operations needed to get from the model described by one list of operations to the model
+ * described by another. The resources are matched up by address, so that only the resources which were removed
+ * or added, and the attributes which were changed, result in operations. Resources with changed parameters which
+ * cannot be written are removed and added again.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class OperationsDiff {
+
+    private OperationsDiff() {
+    }
+
+    /**
+     * Compares two lists of operations, as returned by the subsystem {@code describe} operation.
+     * <p>
+     * Removed resources are removed first, children before their parents. Then the added resources are added and the
+     * changed attributes are written, in the order of {@code newOperations}. Attributes which are no longer set
+     * are undefined with a {@code write-attribute} operation without a value. If a changed parameter is not
+     * registered as a writable attribute in {@code rootRegistration}, for example because it is read-only or may
+     * only be set when adding the resource, the resource and its children are removed and added again instead.
+     * Operations other than {@code add} are output if they do not appear in {@code oldOperations}.
+     *
+     * @param oldOperations the operations describing the old model
+     * @param newOperations the operations describing the new model
+     * @param rootRegistration the root resource registration, used to check which attributes can be written
+     * @return the operations to apply to the old model to get the new one
+     */
+    public static List<ModelNode> diff(List<ModelNode> oldOperations, List<ModelNode> newOperations,
+                                       ImmutableManagementResourceRegistration rootRegistration) {
+        Map<PathAddress, ModelNode> oldAdds = new LinkedHashMap<>();
+        Set<ModelNode> oldOthers = new HashSet<>();
+        index(oldOperations, oldAdds, oldOthers);
+        Map<PathAddress, ModelNode> newAdds = new LinkedHashMap<>();
+        index(newOperations, newAdds, new HashSet<ModelNode>());
+
+        Set<PathAddress> recreated = new HashSet<>();
+        for (Map.Entry<PathAddress, ModelNode> entry : newAdds.entrySet()) {
+            ModelNode oldAdd = oldAdds.get(entry.getKey());
+            if (oldAdd != null && !canWriteChangedAttributes(entry.getKey(), oldAdd, entry.getValue(), rootRegistration)) {
+                recreated.add(entry.getKey());
+            }
+        }
+
+        List<ModelNode> result = new ArrayList<>();
+
+        List<PathAddress> removed = new ArrayList<>();
+        for (PathAddress address : oldAdds.keySet()) {
+            if (!newAdds.containsKey(address) || isRecreated(address, recreated)) {
+                removed.add(address);
+            }
+        }
+        for (int i = removed.size() - 1; i >= 0; i--) {
+            result.add(Util.createRemoveOperation(removed.get(i)));
+        }
+
+        for (ModelNode operation : newOperations) {
+            if (!isAdd(operation)) {
+                if (!oldOthers.contains(operation)) {
+                    result.add(operation);
+                }
+                continue;
+            }
+            PathAddress address = PathAddress.pathAddress(operation.require(OP_ADDR));
+            ModelNode oldAdd = oldAdds.get(address);
+            if (oldAdd == null || isRecreated(address, recreated)) {
+                result.add(operation);
+            } else {
+                writeChangedAttributes(address, oldAdd, operation, result);
+            }
+        }
+        return result;
+    }
+
+    private static void index(List<ModelNode> operations, Map<PathAddress, ModelNode> adds, Set<ModelNode> others) {
+        for (ModelNode operation : operations) {
+            if (isAdd(operation)) {
+                adds.put(PathAddress.pathAddress(operation.require(OP_ADDR)), operation);
+            } else {
+                others.add(operation);
+            }
+        }
+    }
+
+    private static boolean isAdd(ModelNode operation) {
+        return operation.has(OP) && ADD.equals(operation.require(OP).asString());
+    }
+
+    /**
+     * Checks whether the address, or any of its parents, is removed and added again, in which case it has to be
+     * added again as well
+     */
+    private static boolean isRecreated(PathAddress address, Set<PathAddress> recreated) {
+        for (int i = address.size(); i > 0; i--) {
+            if (recreated.contains(address.subAddress(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean canWriteChangedAttributes(PathAddress address, ModelNode oldAdd, ModelNode newAdd,
+                                                     ImmutableManagementResourceRegistration rootRegistration) {
+        for (String name : getChangedAttributes(oldAdd, newAdd)) {
+            AttributeAccess access = rootRegistration.getAttributeAccess(address, name);
+            if (access == null || access.getAccessType() != AttributeAccess.AccessType.READ_WRITE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> getChangedAttributes(ModelNode oldAdd, ModelNode newAdd) {
+        Set<String> names = new LinkedHashSet<>();
+        names.addAll(newAdd.keys());
+        names.addAll(oldAdd.keys());
+        names.remove(OP);
+        names.remove(OP_ADDR);
+        Set<String> changed = new LinkedHashSet<>();
+        for (String name : names) {
+            ModelNode oldValue = oldAdd.has(name) ? oldAdd.get(name) : new ModelNode();
+            ModelNode newValue = newAdd.has(name) ? newAdd.get(name) : new ModelNode();
+            if (!oldValue.equals(newValue)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    private static void writeChangedAttributes(PathAddress address, ModelNode oldAdd, ModelNode newAdd, List<ModelNode> result) {
+        for (String name : getChangedAttributes(oldAdd, newAdd)) {
+            ModelNode write = Util.createOperation(WRITE_ATTRIBUTE_OPERATION, address);
+            write.get(NAME).set(name);
+            if (newAdd.hasDefined(name)) {
+                write.get(VALUE).set(newAdd.get(name));
+            }
+            result.add(write);
+        }
+    }
+}
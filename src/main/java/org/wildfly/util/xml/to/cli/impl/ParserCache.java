@@ -0,0 +1,153 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.extension.ExtensionRegistry;
+import org.jboss.staxmapper.XMLMapper;
+
+/**
+ * A cache of the parsers set up for extensions, so that converting several documents with the same extension only
+ * registers its parsers once. Pass the same cache to the {@link org.wildfly.util.xml.to.cli.WildFlyXmlToCli.Builder}s
+ * whose conversions should share parsers; by default conversions do not use a cache.
+ * <p>
+ * The entries are keyed by subsystem name and extension instance, so differently configured instances of an
+ * extension class get parsers of their own. The least recently used entries are evicted once there are more than
+ * the maximum size. The cache holds on to the extensions, and so their class loaders, until their entries are
+ * evicted or the cache is no longer referenced.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class ParserCache {
+
+    private final Map<Key, Parser> cache;
+
+    /**
+     * Creates a cache
+     *
+     * @param maxSize the maximum number of extensions to keep parsers for
+     */
+    public ParserCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.cache = new LinkedHashMap<Key, Parser>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Parser> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached parser for the extension and subsystem, creating it if needed
+     *
+     * @param subsystemName the subsystem name
+     * @param extension the extension
+     * @param factory creates the parser if it is not cached
+     * @return the parser
+     */
+    Parser get(String subsystemName, Extension extension, Callable<Parser> factory) throws Exception {
+        Key key = new Key(subsystemName, extension);
+        synchronized (cache) {
+            Parser parser = cache.get(key);
+            if (parser != null) {
+                return parser;
+            }
+        }
+        // Register the parsers outside the lock, if another thread got there first we use theirs
+        Parser parser = factory.call();
+        synchronized (cache) {
+            Parser existing = cache.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            cache.put(key, parser);
+        }
+        return parser;
+    }
+
+    /**
+     * Gets the number of extensions parsers are cached for
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes all the cached parsers
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * The parser for an extension. Once created it is only read from, so it can be shared between threads.
+     */
+    static final class Parser {
+        final XMLMapper xmlMapper;
+        final ExtensionRegistry extensionParsingRegistry;
+        final ModelTestParser testParser;
+
+        Parser(XMLMapper xmlMapper, ExtensionRegistry extensionParsingRegistry, ModelTestParser testParser) {
+            this.xmlMapper = xmlMapper;
+            this.extensionParsingRegistry = extensionParsingRegistry;
+            this.testParser = testParser;
+        }
+    }
+
+    private static final class Key {
+        private final String subsystemName;
+        private final List<Extension> extensions;
+
+        Key(String subsystemName, Extension extension) {
+            this.subsystemName = subsystemName;
+            if (extension instanceof CompositeExtension) {
+                // A new composite is created for each conversion, so use the extensions it is made of
+                this.extensions = ((CompositeExtension) extension).getExtensions();
+            } else {
+                this.extensions = Collections.singletonList(extension);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            if (!Objects.equals(subsystemName, key.subsystemName) || extensions.size() != key.extensions.size()) {
+                return false;
+            }
+            for (int i = 0; i < extensions.size(); i++) {
+                if (extensions.get(i) != key.extensions.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Objects.hashCode(subsystemName);
+            for (Extension extension : extensions) {
+                hash = 31 * hash + System.identityHashCode(extension);
+            }
+            return hash;
+        }
+    }
+}
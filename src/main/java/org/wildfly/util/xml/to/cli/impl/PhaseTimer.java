@@ -0,0 +1,96 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.wildfly.util.xml.to.cli.ConversionListener;
+import org.wildfly.util.xml.to.cli.ConversionPhase;
+import org.wildfly.util.xml.to.cli.PhaseMetrics;
+
+/**
+ * Internal class.
+ * Measures a conversion phase and reports it to a {@link ConversionListener}. When there is no listener nothing is
+ * measured.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class PhaseTimer {
+
+    private static final PhaseTimer NONE = new PhaseTimer(null, null, null, -1);
+
+    private final ConversionListener listener;
+    private final ConversionPhase phase;
+    private final String subsystemName;
+    private final long documentSize;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    private PhaseTimer(ConversionListener listener, ConversionPhase phase, String subsystemName, long documentSize) {
+        this.listener = listener;
+        this.phase = phase;
+        this.subsystemName = subsystemName;
+        this.documentSize = documentSize;
+        this.startAllocatedBytes = listener == null ? -1 : allocatedBytes();
+        this.startNanos = listener == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Starts timing a phase
+     *
+     * @param listener the listener, may be {@code null}
+     * @param phase the phase
+     * @param subsystemName the subsystem name
+     * @param xml the xml being converted, may be {@code null} if the size should not be reported
+     * @return the timer
+     */
+    public static PhaseTimer start(ConversionListener listener, ConversionPhase phase, String subsystemName, XmlSource xml) {
+        if (listener == null) {
+            return NONE;
+        }
+        listener.phaseStarted(phase, subsystemName);
+        return new PhaseTimer(listener, phase, subsystemName, xml == null ? -1 : xml.size());
+    }
+
+    /**
+     * Stops timing the phase, and reports it to the listener
+     *
+     * @param operationCount the number of operations the phase produced or worked on
+     */
+    public void stop(int operationCount) {
+        if (listener == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocated = startAllocatedBytes < 0 ? -1 : allocatedBytes() - startAllocatedBytes;
+        listener.phaseCompleted(new PhaseMetrics(phase, subsystemName, durationNanos, operationCount, documentSize, allocated));
+    }
+
+    private static long allocatedBytes() {
+        try {
+            return Allocation.currentThread();
+        } catch (LinkageError e) {
+            // Not a JVM with com.sun.management
+            return -1;
+        }
+    }
+
+    private static final class Allocation {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final boolean SUPPORTED = isSupported();
+
+        private static boolean isSupported() {
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+            }
+            return false;
+        }
+
+        static long currentThread() {
+            if (!SUPPORTED) {
+                return -1;
+            }
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
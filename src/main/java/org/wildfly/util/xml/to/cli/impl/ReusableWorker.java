@@ -0,0 +1,247 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.COMPOSITE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.STEPS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.jboss.as.controller.ControlledProcessState;
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.wildfly.util.xml.to.cli.ControllerModels;
+import org.wildfly.util.xml.to.cli.ConversionListener;
+import org.wildfly.util.xml.to.cli.ConversionPhase;
+
+/**
+ * A {@link Worker} variant which keeps the parser and booted controllers around between conversions. Rather than
+ * booting a new controller for each document, the parsed operations are executed against an already running
+ * controller borrowed from a pool, and the subsystem is removed again once it has been described. If that leaves
+ * the controller in any state other than running, for example since an operation needs a reload, the controller is
+ * discarded rather than reused. Several threads may convert documents at the same time, each using its own
+ * controller.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class ReusableWorker implements AutoCloseable {
+
+    private final SubsystemTestDelegate delegate;
+    private final String subsystemName;
+    private final PathAddress subsystemAddress;
+    private final KernelServicesPool pool;
+    private volatile ImmutableManagementResourceRegistration registrationModel;
+    private volatile boolean closed;
+
+    public ReusableWorker(String mainSubsystemName, Extension mainExtension) throws Exception {
+        this(mainSubsystemName, mainExtension, 1);
+    }
+
+    public ReusableWorker(String mainSubsystemName, Extension mainExtension, int poolSize) throws Exception {
+        this(mainSubsystemName, mainExtension, poolSize, ClientExecutors.getDefault(), ContainerFactory.DEFAULT, ControllerModels.NONE);
+    }
+
+    /**
+     * Creates a worker whose controllers use the passed in executor for operations with attached streams, and are
+     * installed in containers from the passed in factory with the passed in extra models set up
+     *
+     * @param mainSubsystemName the subsystem name
+     * @param mainExtension the extension
+     * @param poolSize the number of pre-booted controllers to keep ready
+     * @param clientExecutor the executor. It is not shut down when the worker is closed
+     * @param containerFactory the factory for the service containers the controllers are installed in
+     * @param controllerModels the parts of the model outside the subsystem to set up in the controllers
+     */
+    public ReusableWorker(String mainSubsystemName, Extension mainExtension, int poolSize, ExecutorService clientExecutor,
+                          ContainerFactory containerFactory, ControllerModels controllerModels) throws Exception {
+        this.delegate = new SubsystemTestDelegate(mainSubsystemName, mainExtension);
+        delegate.setClientExecutor(clientExecutor);
+        delegate.setContainerFactory(containerFactory);
+        delegate.setControllerModels(controllerModels);
+        this.subsystemName = mainSubsystemName;
+        this.subsystemAddress = PathAddress.pathAddress(SUBSYSTEM, mainSubsystemName);
+        delegate.initializeParser();
+        this.pool = new KernelServicesPool(delegate, poolSize);
+    }
+
+    /**
+     * Sets the StAX implementation to read the xml with. By default a shared, configured instance of the default
+     * implementation is used.
+     *
+     * @param xmlInputFactory the factory
+     */
+    public void setXmlInputFactory(XMLInputFactory xmlInputFactory) {
+        delegate.setXmlInputFactory(xmlInputFactory);
+    }
+
+    public List<ModelNode> convertXmlToOperations(XmlSource xml) throws Exception {
+        return convertXmlToOperations(xml, null);
+    }
+
+    /**
+     * Converts the xml, reporting the phases to the listener
+     *
+     * @param xml the subsystem xml
+     * @param listener the listener, may be {@code null}
+     * @return the operations
+     */
+    public List<ModelNode> convertXmlToOperations(XmlSource xml, ConversionListener listener) throws Exception {
+        return convertXmlToOperations(xml, listener, false);
+    }
+
+    /**
+     * Converts the xml, reporting the phases to the listener
+     *
+     * @param xml the subsystem xml
+     * @param listener the listener, may be {@code null}
+     * @param verifyRoundTrip whether to check that the model marshals back to the xml, see {@link RoundTripVerifier}
+     * @return the operations
+     */
+    public List<ModelNode> convertXmlToOperations(XmlSource xml, ConversionListener listener, boolean verifyRoundTrip) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("The worker has been closed");
+        }
+        // The xml is needed again to compare with the marshalled model, so read it first
+        final String input = verifyRoundTrip ? xml.readFully() : null;
+        if (input != null) {
+            xml = XmlSource.of(input);
+        }
+        PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.PARSE, subsystemName, xml);
+        final List<ModelNode> operations = delegate.parse(xml);
+        timer.stop(operations.size());
+        timer = PhaseTimer.start(listener, ConversionPhase.BOOT, subsystemName, null);
+        final KernelServices services = pool.borrow();
+        timer.stop(0);
+        boolean added = false;
+        boolean reusable;
+        try {
+            if (operations.size() > 0) {
+                timer = PhaseTimer.start(listener, ConversionPhase.EXECUTE, subsystemName, null);
+                ModelNode composite = Util.createEmptyOperation(COMPOSITE, PathAddress.EMPTY_ADDRESS);
+                ModelNode steps = composite.get(STEPS).setEmptyList();
+                for (ModelNode op : operations) {
+                    steps.add(op);
+                }
+                ModelNode response;
+                String marshalled;
+                // Only marshal the model when storing it after the conversion's operations, not after the reset
+                services.setPersistXml(verifyRoundTrip);
+                try {
+                    response = services.executeOperation(composite);
+                    marshalled = services.getPersistedSubsystemXml();
+                } finally {
+                    services.setPersistXml(false);
+                }
+                if (!SUCCESS.equals(response.get(OUTCOME).asString())) {
+                    throw new IllegalStateException("The XML does not appear to be valid: " + response.get(FAILURE_DESCRIPTION));
+                }
+                added = true;
+                if (verifyRoundTrip) {
+                    RoundTripVerifier.verify(input, marshalled);
+                }
+                timer.stop(operations.size());
+            }
+
+            timer = PhaseTimer.start(listener, ConversionPhase.DESCRIBE, subsystemName, null);
+            ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.DESCRIBE,
+                    services.getContainer().getName(), subsystemName, delegate.getMainExtension());
+            List<ModelNode> described = null;
+            try {
+                ModelNode op = Util.createOperation("describe", subsystemAddress);
+                described = services.executeForResult(op).asList();
+            } finally {
+                span.end(described == null ? -1 : described.size());
+            }
+            timer.stop(described.size());
+            return described;
+        } finally {
+            reusable = added ? reset(services) : isRunning(services);
+            if (reusable) {
+                pool.release(services);
+            } else {
+                pool.discard(services);
+            }
+        }
+    }
+
+    /**
+     * Parses the xml and returns the parsed operations as they are, without using a controller. The operations
+     * are only checked against the resources and operations registered by the extension.
+     *
+     * @param xml the subsystem xml
+     * @return the parsed operations
+     */
+    public List<ModelNode> parseXmlToOperations(XmlSource xml) throws Exception {
+        return parseXmlToOperations(xml, null);
+    }
+
+    /**
+     * Parses the xml as described in {@link #parseXmlToOperations(XmlSource)}, reporting the phase to the listener
+     *
+     * @param xml the subsystem xml
+     * @param listener the listener, may be {@code null}
+     * @return the parsed operations
+     */
+    public List<ModelNode> parseXmlToOperations(XmlSource xml, ConversionListener listener) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("The worker has been closed");
+        }
+        PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.PARSE, subsystemName, xml);
+        final List<ModelNode> operations = delegate.parse(xml);
+        delegate.validateOperations(operations, getRegistrationModel());
+        timer.stop(operations.size());
+        return operations;
+    }
+
+    /**
+     * Gets the resources and operations registered by the extension. They are only created once.
+     *
+     * @return the root resource registration
+     */
+    public ImmutableManagementResourceRegistration getRegistrationModel() {
+        ImmutableManagementResourceRegistration registrationModel = this.registrationModel;
+        if (registrationModel == null) {
+            synchronized (this) {
+                registrationModel = this.registrationModel;
+                if (registrationModel == null) {
+                    registrationModel = delegate.createRegistrationModel();
+                    this.registrationModel = registrationModel;
+                }
+            }
+        }
+        return registrationModel;
+    }
+
+    /**
+     * Removes the subsystem so that the controller can be used for the next conversion. If the subsystem
+     * cannot be removed, or the conversion or the removal left the controller needing a reload or restart, we
+     * cannot trust the state of the controller, so it should be discarded.
+     *
+     * @return {@code true} if the controller can be reused
+     */
+    private boolean reset(KernelServices services) {
+        ModelNode response = services.executeOperation(Util.createRemoveOperation(subsystemAddress));
+        return SUCCESS.equals(response.get(OUTCOME).asString()) && isRunning(services);
+    }
+
+    private static boolean isRunning(KernelServices services) {
+        return services.getProcessState() == ControlledProcessState.State.RUNNING;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (!closed) {
+            closed = true;
+            pool.close();
+            delegate.cleanup();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that the model of a booted controller marshals back to the xml it was parsed from. The subsystem elements
+ * are compared ignoring formatting, comments, the order of the attributes and namespace prefixes, which is what the
+ * subsystem writers are expected to preserve. Subsystems in the input which were not converted, for example as
+ * there is no extension for them, are ignored.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+final class RoundTripVerifier {
+
+    private static final String SUBSYSTEM = "subsystem";
+
+    private RoundTripVerifier() {
+    }
+
+    /**
+     * Compares the subsystems in the input with the marshalled ones
+     *
+     * @param input the xml which was converted
+     * @param marshalled the xml the model was marshalled to
+     * @throws IllegalStateException if the model did not marshal back to the input
+     */
+    static void verify(String input, String marshalled) {
+        if (marshalled == null) {
+            throw new IllegalStateException("The model was not marshalled");
+        }
+        Map<String, Element> inputSubsystems = findSubsystems(parse(input, "input"));
+        // The subsystems are written one after the other, so give them a root element
+        Map<String, Element> marshalledSubsystems = findSubsystems(parse("<root>" + stripDeclaration(marshalled) + "</root>", "marshalled"));
+        if (marshalledSubsystems.isEmpty()) {
+            throw new IllegalStateException("No subsystems were marshalled");
+        }
+        for (Map.Entry<String, Element> entry : marshalledSubsystems.entrySet()) {
+            Element inputSubsystem = inputSubsystems.get(entry.getKey());
+            if (inputSubsystem == null) {
+                throw new IllegalStateException("The marshalled subsystem " + entry.getKey() + " is not in the input");
+            }
+            String difference = compare(inputSubsystem, entry.getValue(), "/" + SUBSYSTEM);
+            if (difference != null) {
+                throw new IllegalStateException("The " + entry.getKey() + " subsystem does not marshal back to the input xml: " + difference);
+            }
+        }
+    }
+
+    private static Document parse(String xml, String description) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setCoalescing(true);
+            factory.setIgnoringComments(true);
+            factory.setExpandEntityReferences(false);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new InputSource(new StringReader(xml)));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new IllegalStateException("Could not read the " + description + " xml", e);
+        }
+    }
+
+    private static String stripDeclaration(String xml) {
+        if (xml.startsWith("<?xml")) {
+            int end = xml.indexOf("?>");
+            if (end >= 0) {
+                return xml.substring(end + 2);
+            }
+        }
+        return xml;
+    }
+
+    /**
+     * Finds the subsystem elements, which may be the document element, or nested in a server configuration
+     *
+     * @return the subsystem elements keyed by namespace, in document order
+     */
+    private static Map<String, Element> findSubsystems(Document document) {
+        Map<String, Element> subsystems = new LinkedHashMap<>();
+        findSubsystems(document.getDocumentElement(), subsystems);
+        return subsystems;
+    }
+
+    private static void findSubsystems(Element element, Map<String, Element> subsystems) {
+        if (SUBSYSTEM.equals(element.getLocalName())) {
+            subsystems.put(String.valueOf(element.getNamespaceURI()), element);
+            return;
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                findSubsystems((Element) child, subsystems);
+            }
+        }
+    }
+
+    private static String compare(Element expected, Element actual, String path) {
+        if (!equals(expected.getNamespaceURI(), actual.getNamespaceURI()) || !expected.getLocalName().equals(actual.getLocalName())) {
+            return path + ": expected element " + name(expected) + " but was " + name(actual);
+        }
+        Map<String, String> expectedAttributes = attributes(expected);
+        Map<String, String> actualAttributes = attributes(actual);
+        if (!expectedAttributes.equals(actualAttributes)) {
+            return path + ": expected attributes " + expectedAttributes + " but were " + actualAttributes;
+        }
+        List<Node> expectedChildren = children(expected);
+        List<Node> actualChildren = children(actual);
+        for (int i = 0; i < Math.min(expectedChildren.size(), actualChildren.size()); i++) {
+            Node expectedChild = expectedChildren.get(i);
+            Node actualChild = actualChildren.get(i);
+            if (expectedChild.getNodeType() == Node.ELEMENT_NODE && actualChild.getNodeType() == Node.ELEMENT_NODE) {
+                String difference = compare((Element) expectedChild, (Element) actualChild, path + "/" + actualChild.getLocalName() + "[" + i + "]");
+                if (difference != null) {
+                    return difference;
+                }
+            } else if (expectedChild.getNodeType() != actualChild.getNodeType()
+                    || !expectedChild.getTextContent().trim().equals(actualChild.getTextContent().trim())) {
+                return path + ": expected " + describe(expectedChild) + " but was " + describe(actualChild);
+            }
+        }
+        if (expectedChildren.size() != actualChildren.size()) {
+            return path + ": expected " + expectedChildren.size() + " children but there were " + actualChildren.size();
+        }
+        return null;
+    }
+
+    private static Map<String, String> attributes(Element element) {
+        Map<String, String> attributes = new TreeMap<>();
+        NamedNodeMap map = element.getAttributes();
+        for (int i = 0; i < map.getLength(); i++) {
+            Attr attr = (Attr) map.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                continue;
+            }
+            String name = attr.getNamespaceURI() == null ? attr.getLocalName() : "{" + attr.getNamespaceURI() + "}" + attr.getLocalName();
+            attributes.put(name, attr.getValue());
+        }
+        return attributes;
+    }
+
+    private static List<Node> children(Element element) {
+        List<Node> children = new ArrayList<>();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    children.add(child);
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    if (!child.getTextContent().trim().isEmpty()) {
+                        children.add(child);
+                    }
+                    break;
+                default:
+                    // Comments and processing instructions do not make it into the model
+            }
+        }
+        return children;
+    }
+
+    private static String describe(Node node) {
+        return node.getNodeType() == Node.ELEMENT_NODE ? "element " + name((Element) node) : "text '" + node.getTextContent().trim() + "'";
+    }
+
+    private static String name(Element element) {
+        return element.getNamespaceURI() == null ? element.getLocalName() : "{" + element.getNamespaceURI() + "}" + element.getLocalName();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
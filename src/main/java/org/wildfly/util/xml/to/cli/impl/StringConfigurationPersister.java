@@ -2,6 +2,7 @@ package org.wildfly.util.xml.to.cli.impl;
 
 
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
@@ -21,8 +22,12 @@ import org.jboss.staxmapper.XMLElementWriter;
  */
 class StringConfigurationPersister extends AbstractConfigurationPersister {
 
+    // Marshalling only reuses the buffer of the thread it runs on, and buffers bigger than this are not kept
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ReusableOutputStream> outputStreams = ThreadLocal.withInitial(ReusableOutputStream::new);
+
     private final List<ModelNode> bootOperations;
-    private final boolean persistXml;
+    private volatile boolean persistXml;
     volatile String marshalled;
 
     StringConfigurationPersister(List<ModelNode> bootOperations, XMLElementWriter<ModelMarshallingContext> rootDeparser, boolean persistXml) {
@@ -31,6 +36,19 @@ class StringConfigurationPersister extends AbstractConfigurationPersister {
         this.persistXml = persistXml;
     }
 
+    /**
+     * Sets whether the model should be marshalled to xml whenever it is stored. This is normally off, since the
+     * xml is only needed to verify that the model marshals back to the xml it was parsed from.
+     *
+     * @param persistXml whether to marshal the model
+     */
+    void setPersistXml(boolean persistXml) {
+        this.persistXml = persistXml;
+        if (!persistXml) {
+            marshalled = null;
+        }
+    }
+
     @Override
     public PersistenceResource store(ModelNode model, Set<PathAddress> affectedAddresses)
             throws ConfigurationPersistenceException {
@@ -54,28 +72,27 @@ class StringConfigurationPersister extends AbstractConfigurationPersister {
     }
 
     private class StringPersistenceResource implements PersistenceResource {
-        private byte[] bytes;
+        private final String xml;
 
         StringPersistenceResource(final ModelNode model, final AbstractConfigurationPersister persister) throws ConfigurationPersistenceException {
-            ByteArrayOutputStream output = new ByteArrayOutputStream(1024 * 8);
+            ReusableOutputStream output = outputStreams.get();
+            output.reset();
             try {
-                try {
-                    persister.marshallAsXml(model, output);
-                } finally {
-                    try {
-                        output.close();
-                    } catch (Exception ignore) {
-                    }
-                    bytes = output.toByteArray();
-                }
+                persister.marshallAsXml(model, output);
+                // Decode straight from the buffer rather than copying it with toByteArray() first
+                xml = output.decode(StandardCharsets.UTF_8);
             } catch (Exception e) {
                 throw new ConfigurationPersistenceException("Failed to marshal configuration", e);
+            } finally {
+                if (output.capacity() > MAX_POOLED_BUFFER_SIZE) {
+                    outputStreams.remove();
+                }
             }
         }
 
         @Override
         public void commit() {
-            marshalled = new String(bytes, StandardCharsets.UTF_8);
+            marshalled = xml;
         }
 
         @Override
@@ -83,4 +100,18 @@ class StringConfigurationPersister extends AbstractConfigurationPersister {
             marshalled = null;
         }
     }
+
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+        ReusableOutputStream() {
+            super(1024 * 8);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        String decode(Charset charset) {
+            return new String(buf, 0, count, charset);
+        }
+    }
 }
\ No newline at end of file
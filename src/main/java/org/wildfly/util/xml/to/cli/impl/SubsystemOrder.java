@@ -0,0 +1,154 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.as.controller.CapabilityReferenceRecorder;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.capability.RuntimeCapability;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Internal class.
+ * Works out the order to output several subsystems in, so that subsystems come after the subsystems providing
+ * the capabilities they require. This is used both when booting a controller and when only parsing.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+final class SubsystemOrder {
+
+    private SubsystemOrder() {
+    }
+
+    /**
+     * Gets the names of the subsystems the operations are for, in the order they first appear
+     *
+     * @param operations the operations
+     * @return the subsystem names
+     */
+    static List<String> documentOrder(List<ModelNode> operations) {
+        Set<String> names = new LinkedHashSet<>();
+        for (ModelNode operation : operations) {
+            PathAddress address = PathAddress.pathAddress(operation.get(OP_ADDR));
+            if (address.size() > 0 && SUBSYSTEM.equals(address.getElement(0).getKey())) {
+                names.add(address.getElement(0).getValue());
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Sorts the subsystems so that each subsystem comes after the ones providing capabilities it requires, as far
+     * as the resource registrations tell us. Otherwise, and if there are cycles, the passed in order is kept.
+     *
+     * @param names the subsystem names, in document order
+     * @param rootRegistration the root resource registration of the controller the subsystems were booted in
+     * @return the sorted subsystem names
+     */
+    static List<String> dependencyOrder(List<String> names, ImmutableManagementResourceRegistration rootRegistration) {
+        Map<String, Set<String>> provided = new HashMap<>();
+        Map<String, Set<String>> required = new HashMap<>();
+        for (String name : names) {
+            Set<String> subsystemProvided = new HashSet<>();
+            Set<String> subsystemRequired = new HashSet<>();
+            ImmutableManagementResourceRegistration registration = rootRegistration.getSubModel(PathAddress.pathAddress(SUBSYSTEM, name));
+            if (registration != null) {
+                collectCapabilities(registration, subsystemProvided, subsystemRequired);
+            }
+            provided.put(name, subsystemProvided);
+            required.put(name, subsystemRequired);
+        }
+
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        for (String name : names) {
+            Set<String> subsystemDependencies = new HashSet<>();
+            for (String other : names) {
+                if (!other.equals(name) && !disjoint(required.get(name), provided.get(other))) {
+                    subsystemDependencies.add(other);
+                }
+            }
+            dependencies.put(name, subsystemDependencies);
+        }
+
+        List<String> sorted = new ArrayList<>(names.size());
+        List<String> remaining = new ArrayList<>(names);
+        while (!remaining.isEmpty()) {
+            String next = null;
+            for (String name : remaining) {
+                if (sorted.containsAll(dependencies.get(name))) {
+                    next = name;
+                    break;
+                }
+            }
+            if (next == null) {
+                // A cycle, so just keep the document order
+                next = remaining.get(0);
+            }
+            remaining.remove(next);
+            sorted.add(next);
+        }
+        return sorted;
+    }
+
+    /**
+     * Groups the operations by subsystem, and puts the groups in the order given by
+     * {@link #dependencyOrder(List, ImmutableManagementResourceRegistration)}. The operations for each subsystem
+     * keep their order, and any operations which are not for a subsystem come first.
+     *
+     * @param operations the operations, in document order
+     * @param rootRegistration the root resource registration the subsystems are registered in
+     * @return the sorted operations
+     */
+    static List<ModelNode> sortOperations(List<ModelNode> operations, ImmutableManagementResourceRegistration rootRegistration) {
+        List<ModelNode> sorted = new ArrayList<>(operations.size());
+        Map<String, List<ModelNode>> bySubsystem = new HashMap<>();
+        for (ModelNode operation : operations) {
+            PathAddress address = PathAddress.pathAddress(operation.get(OP_ADDR));
+            if (address.size() > 0 && SUBSYSTEM.equals(address.getElement(0).getKey())) {
+                bySubsystem.computeIfAbsent(address.getElement(0).getValue(), name -> new ArrayList<>()).add(operation);
+            } else {
+                sorted.add(operation);
+            }
+        }
+        for (String name : dependencyOrder(documentOrder(operations), rootRegistration)) {
+            sorted.addAll(bySubsystem.get(name));
+        }
+        return sorted;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void collectCapabilities(ImmutableManagementResourceRegistration registration, Set<String> provided, Set<String> required) {
+        for (RuntimeCapability capability : registration.getCapabilities()) {
+            provided.add(capability.getName());
+        }
+        for (CapabilityReferenceRecorder recorder : registration.getRequirements()) {
+            required.add(recorder.getBaseRequirementName());
+        }
+        for (PathElement child : registration.getChildAddresses(PathAddress.EMPTY_ADDRESS)) {
+            ImmutableManagementResourceRegistration childRegistration = registration.getSubModel(PathAddress.pathAddress(child));
+            if (childRegistration != null && !childRegistration.isAlias() && !childRegistration.isRemote()) {
+                collectCapabilities(childRegistration, provided, required);
+            }
+        }
+    }
+
+    private static boolean disjoint(Set<String> required, Set<String> provided) {
+        for (Iterator<String> it = required.iterator(); it.hasNext() ; ) {
+            if (provided.contains(it.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
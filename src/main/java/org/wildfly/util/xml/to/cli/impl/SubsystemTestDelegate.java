@@ -21,14 +21,20 @@
 */
 package org.wildfly.util.xml.to.cli.impl;
 
-import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
@@ -48,15 +54,19 @@ import org.jboss.as.controller.ProxyController;
 import org.jboss.as.controller.ResourceDefinition;
 import org.jboss.as.controller.RunningMode;
 import org.jboss.as.controller.RunningModeControl;
+import org.jboss.as.controller.SimpleResourceDefinition;
 import org.jboss.as.controller.access.management.AccessConstraintDefinition;
 import org.jboss.as.controller.capability.RuntimeCapability;
 import org.jboss.as.controller.descriptions.DescriptionProvider;
 import org.jboss.as.controller.descriptions.ModelDescriptionConstants;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
 import org.jboss.as.controller.descriptions.OverrideDescriptionProvider;
 import org.jboss.as.controller.extension.ExtensionRegistry;
+import org.jboss.as.controller.extension.ExtensionRegistryType;
 import org.jboss.as.controller.extension.RuntimeHostControllerInfoAccessor;
 import org.jboss.as.controller.extension.SubsystemInformation;
 import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.persistence.NullConfigurationPersister;
 import org.jboss.as.controller.registry.AliasEntry;
 import org.jboss.as.controller.registry.AttributeAccess;
 import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
@@ -65,9 +75,12 @@ import org.jboss.as.controller.registry.NotificationEntry;
 import org.jboss.as.controller.registry.OperationEntry;
 import org.jboss.as.controller.registry.OperationEntry.Flag;
 import org.jboss.as.controller.registry.RuntimePackageDependency;
+import org.jboss.as.controller.services.path.PathManagerService;
 import org.jboss.dmr.ModelNode;
 import org.jboss.staxmapper.XMLElementReader;
 import org.jboss.staxmapper.XMLMapper;
+import org.wildfly.util.xml.to.cli.ControllerModels;
+import org.wildfly.util.xml.to.cli.ConversionListener;
 
 /**
  *
@@ -85,7 +98,7 @@ final class SubsystemTestDelegate {
         SUCCESS.protect();
     }
 
-    private final List<KernelServices> kernelServices = new ArrayList<>();
+    private final List<KernelServices> kernelServices = new CopyOnWriteArrayList<>();
 
     private final String mainSubsystemName;
     private final Extension mainExtension;
@@ -98,11 +111,16 @@ final class SubsystemTestDelegate {
     private ExtensionRegistry extensionParsingRegistry;
     private ModelTestParser testParser;
     private XMLMapper xmlMapper;
+    private volatile XMLInputFactory xmlInputFactory = XmlInputFactories.getDefault();
+    private volatile ExecutorService clientExecutor = ClientExecutors.getDefault();
+    private volatile ContainerFactory containerFactory = ContainerFactory.DEFAULT;
+    private volatile ControllerModels controllerModels = ControllerModels.NONE;
+    private volatile ParserCache parserCache;
 
     /**
      * Creates a new delegate.
      *
-     * @param mainSubsystemName     the name of the subsystem
+     * @param mainSubsystemName     the name of the subsystem, or {@code null} if all the subsystems in the document are of interest
      * @param mainExtension         the extension to test
      */
     SubsystemTestDelegate(final String mainSubsystemName, final Extension mainExtension) {
@@ -110,23 +128,85 @@ final class SubsystemTestDelegate {
         this.mainExtension = mainExtension;
     }
 
+    /**
+     * Sets the StAX implementation to read the xml with, if something other than the default one should be used
+     *
+     * @param xmlInputFactory the factory, which should already be configured
+     */
+    void setXmlInputFactory(XMLInputFactory xmlInputFactory) {
+        this.xmlInputFactory = xmlInputFactory;
+    }
+
+    /**
+     * Sets the executor used by the controllers' clients for operations with attached streams, if something other
+     * than the shared default one should be used
+     *
+     * @param clientExecutor the executor, which is not shut down by the delegate
+     */
+    void setClientExecutor(ExecutorService clientExecutor) {
+        this.clientExecutor = clientExecutor;
+    }
+
+    /**
+     * Sets the factory for the service containers the controllers are installed in
+     *
+     * @param containerFactory the factory
+     */
+    void setContainerFactory(ContainerFactory containerFactory) {
+        this.containerFactory = containerFactory;
+    }
+
+    /**
+     * Sets the parts of the model outside the subsystem to set up in the controllers
+     *
+     * @param controllerModels the models
+     */
+    void setControllerModels(ControllerModels controllerModels) {
+        this.controllerModels = controllerModels;
+    }
+
+    /**
+     * Sets the cache to get the parser from, so that it is only set up once for the extension
+     *
+     * @param parserCache the cache, or {@code null} to set up the parser for each conversion
+     */
+    void setParserCache(ParserCache parserCache) {
+        this.parserCache = parserCache;
+    }
+
     String getMainSubsystemName() {
         return mainSubsystemName;
     }
 
     void initializeParser() throws Exception {
-        //Initialize the parser
-        xmlMapper = XMLMapper.Factory.create();
-        extensionParsingRegistry = new ExtensionRegistry(getProcessType(), new RunningModeControl(RunningMode.NORMAL), null, null, null, RuntimeHostControllerInfoAccessor.SERVER);
-        testParser = new TestParser(mainSubsystemName, extensionParsingRegistry);
+        //Initialize the parser, or reuse the one set up by an earlier conversion
+        ParserCache parserCache = this.parserCache;
+        ParserCache.Parser parser = parserCache == null ? createParser() : parserCache.get(mainSubsystemName, mainExtension, this::createParser);
+        xmlMapper = parser.xmlMapper;
+        extensionParsingRegistry = parser.extensionParsingRegistry;
+        testParser = parser.testParser;
+    }
+
+    private ParserCache.Parser createParser() {
+        XMLMapper xmlMapper = XMLMapper.Factory.create();
+        ExtensionRegistry extensionParsingRegistry = new ExtensionRegistry(getProcessType(), new RunningModeControl(RunningMode.NORMAL), null, null, null, RuntimeHostControllerInfoAccessor.SERVER);
+        TestParser testParser = new TestParser(mainSubsystemName, extensionParsingRegistry);
         xmlMapper.registerRootElement(new QName(TEST_NAMESPACE, "test"), testParser);
         mainExtension.initializeParsers(extensionParsingRegistry.getExtensionParsingContext("Test", xmlMapper));
+        return new ParserCache.Parser(xmlMapper, extensionParsingRegistry, testParser);
     }
 
-    void cleanup() throws Exception {
+    /**
+     * Shuts down all the controllers created by this delegate. The containers terminate in parallel in the
+     * background, so this does not wait for them.
+     *
+     * @return a future completed once all the containers have terminated
+     */
+    CompletableFuture<Void> cleanup() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
         for (KernelServices kernelServices : this.kernelServices) {
             try {
-                kernelServices.shutdown();
+                futures.add(kernelServices.shutdown());
             } catch (Exception e) {
                 //we don't care
             }
@@ -135,6 +215,21 @@ final class SubsystemTestDelegate {
         xmlMapper = null;
         extensionParsingRegistry = null;
         testParser = null;
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Shuts down a single controller created by this delegate, leaving the parser and any other controllers intact
+     *
+     * @param services the controller to shut down
+     */
+    void shutdown(KernelServices services) {
+        kernelServices.remove(services);
+        try {
+            services.shutdown();
+        } catch (Exception e) {
+            //we don't care
+        }
     }
 
     Extension getMainExtension() {
@@ -149,15 +244,85 @@ final class SubsystemTestDelegate {
      * @throws XMLStreamException if there is a parsing problem
      */
     List<ModelNode> parse(String subsystemXml) throws XMLStreamException {
-        String xml = "<test xmlns=\"" + TEST_NAMESPACE + "\">" +
-                subsystemXml +
-                "</test>";
-        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        return parse(new StringReader(subsystemXml));
+    }
+
+    /**
+     * Parse the subsystem xml and create the operations that will be passed into the controller. The xml is
+     * streamed into the parser.
+     *
+     * @param subsystemXml a reader for the subsystem xml to be parsed. It is not closed.
+     * @return the created operations
+     * @throws XMLStreamException if there is a parsing problem
+     */
+    List<ModelNode> parse(Reader subsystemXml) throws XMLStreamException {
+        final Reader xml = new TestDocumentReader("<test xmlns=\"" + TEST_NAMESPACE + "\">", subsystemXml, "</test>");
+        final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(xml);
         final List<ModelNode> operationList = new ArrayList<>();
-        xmlMapper.parseDocument(operationList, reader);
+        try {
+            xmlMapper.parseDocument(operationList, reader);
+        } finally {
+            reader.close();
+        }
         return operationList;
     }
 
+    /**
+     * Parse the subsystem xml and create the operations that will be passed into the controller.
+     *
+     * @param source the source of the subsystem xml to be parsed
+     * @return the created operations
+     * @throws XMLStreamException if there is a parsing problem
+     * @throws IOException if the xml could not be read
+     */
+    List<ModelNode> parse(XmlSource source) throws XMLStreamException, IOException {
+        try (Reader reader = source.openReader()) {
+            return parse(reader);
+        }
+    }
+
+
+    /**
+     * Creates a registration-only model containing the resources registered by the extension. No controller or
+     * service container is created, so this is much cheaper than booting a controller, but it can only be used
+     * to check that the operations are addressed to known resources.
+     *
+     * @return the root resource registration
+     */
+    ImmutableManagementResourceRegistration createRegistrationModel() {
+        ExtensionRegistry registry = cloneExtensionRegistry();
+        registry.setWriterRegistry(new NullConfigurationPersister());
+        registry.setPathManager(new PathManagerService() {
+        });
+        ManagementResourceRegistration rootRegistration = ManagementResourceRegistration.Factory.forProcessType(ProcessType.STANDALONE_SERVER)
+                .createRegistration(new SimpleResourceDefinition(null, NonResolvingResourceDescriptionResolver.INSTANCE));
+        mainExtension.initialize(registry.getExtensionContext("Test", rootRegistration, ExtensionRegistryType.SLAVE));
+        return rootRegistration;
+    }
+
+    /**
+     * Checks that the operations are registered in a model created by {@link #createRegistrationModel()}
+     *
+     * @param operations the operations to check
+     * @param rootRegistration the root resource registration
+     * @throws IllegalStateException if an operation has no name, or its address or name is not registered
+     */
+    void validateOperations(List<ModelNode> operations, ImmutableManagementResourceRegistration rootRegistration) {
+        for (ModelNode operation : operations) {
+            // Operations without an address are for the root resource
+            PathAddress address = operation.has(OP_ADDR) ? PathAddress.pathAddress(operation.require(OP_ADDR)) : PathAddress.EMPTY_ADDRESS;
+            if (!operation.has(OP)) {
+                throw new IllegalStateException("The XML does not appear to be valid. An operation for " + address + " has no name");
+            }
+            String name = operation.require(OP).asString();
+            if (rootRegistration.getSubModel(address) == null) {
+                throw new IllegalStateException("The XML does not appear to be valid. No resource is registered for " + address);
+            }
+            if (rootRegistration.getOperationEntry(address, name) == null) {
+                throw new IllegalStateException("The XML does not appear to be valid. No '" + name + "' operation is registered for " + address);
+            }
+        }
+    }
 
     /**
      * Creates a new kernel services builder used to create a new controller containing the subsystem being tested
@@ -192,6 +357,8 @@ final class SubsystemTestDelegate {
 
     private class KernelServicesBuilderImpl implements KernelServicesBuilder, BootOperationsBuilder.BootOperationParser {
         private final BootOperationsBuilder bootOperationBuilder;
+        private boolean persistXml;
+        private ConversionListener listener;
 
         public KernelServicesBuilderImpl() {
             bootOperationBuilder = new BootOperationsBuilder(this);
@@ -203,16 +370,32 @@ final class SubsystemTestDelegate {
             return this;
         }
 
+        @Override
+        public KernelServicesBuilder setBootOperations(List<ModelNode> bootOperations) {
+            bootOperationBuilder.setBootOperations(bootOperations);
+            return this;
+        }
+
+        @Override
+        public KernelServicesBuilder setPersistXml(boolean persistXml) {
+            this.persistXml = persistXml;
+            return this;
+        }
+
+        @Override
+        public KernelServicesBuilder setListener(ConversionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
 
         public KernelServices build() throws Exception {
             bootOperationBuilder.validateNotAlreadyBuilt();
             List<ModelNode> bootOperations = bootOperationBuilder.build();
             KernelServicesImpl kernelServices = KernelServicesImpl.create(
                     mainSubsystemName, cloneExtensionRegistry(), bootOperations,
-                    testParser, mainExtension, false);
+                    testParser, mainExtension, persistXml, listener, clientExecutor, containerFactory, controllerModels);
             SubsystemTestDelegate.this.kernelServices.add(kernelServices);
-            ImmutableManagementResourceRegistration subsystemReg = kernelServices.getRootRegistration().getSubModel(PathAddress.pathAddress(PathElement.pathElement(SUBSYSTEM, mainSubsystemName)));
-
             return kernelServices;
         }
 
@@ -0,0 +1,96 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * Internal class.
+ * Wraps the subsystem xml in the root element understood by {@link TestParser} while it is being read, so that
+ * the document does not need to be copied into a bigger string first. Any byte order mark and xml declaration
+ * at the start of the subsystem xml are skipped, since they are not allowed inside the root element. Any declared
+ * encoding has already been used by {@link XmlSource} to decode the xml.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+class TestDocumentReader extends Reader {
+
+    private static final String DECLARATION_START = "<?xml";
+
+    private final String prefix;
+    private final String suffix;
+    private final Reader document;
+    private PushbackReader body;
+    private int prefixPos;
+    private int suffixPos;
+
+    TestDocumentReader(String prefix, Reader document, String suffix) {
+        this.prefix = prefix;
+        this.document = document;
+        this.suffix = suffix;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (prefixPos < prefix.length()) {
+            int count = Math.min(len, prefix.length() - prefixPos);
+            prefix.getChars(prefixPos, prefixPos + count, cbuf, off);
+            prefixPos += count;
+            return count;
+        }
+        if (body == null) {
+            body = new PushbackReader(document, DECLARATION_START.length() + 1);
+            skipDeclaration();
+        }
+        if (suffixPos == 0) {
+            int count = body.read(cbuf, off, len);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        if (suffixPos < suffix.length()) {
+            int count = Math.min(len, suffix.length() - suffixPos);
+            suffix.getChars(suffixPos, suffixPos + count, cbuf, off);
+            suffixPos += count;
+            return count;
+        }
+        return -1;
+    }
+
+    private void skipDeclaration() throws IOException {
+        int c = body.read();
+        if (c != '\uFEFF' && c != -1) {
+            body.unread(c);
+        }
+        char[] start = new char[DECLARATION_START.length() + 1];
+        int read = 0;
+        while (read < start.length) {
+            int count = body.read(start, read, start.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        if (read == start.length
+                && new String(start, 0, DECLARATION_START.length()).equals(DECLARATION_START)
+                && Character.isWhitespace(start[DECLARATION_START.length()])) {
+            int previous = -1;
+            while ((c = body.read()) != -1) {
+                if (previous == '?' && c == '>') {
+                    break;
+                }
+                previous = c;
+            }
+        } else if (read > 0) {
+            body.unread(start, 0, read);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
@@ -54,6 +54,8 @@ import org.jboss.dmr.ModelNode;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.vfs.VirtualFile;
+import org.wildfly.util.xml.to.cli.ConversionListener;
+import org.wildfly.util.xml.to.cli.ConversionPhase;
 
 /**
  * Internal class used by test framework.Boots up the model controller used for the test.
@@ -69,6 +71,7 @@ class TestModelControllerService extends AbstractControllerService implements Co
     private final CountDownLatch latch = new CountDownLatch(1);
     private final StringConfigurationPersister persister;
     private final RunningModeControl runningModeControl;
+    private final ControlledProcessState processState;
     private volatile ManagementResourceRegistration rootRegistration;
     private volatile Throwable error;
     private volatile boolean bootSuccess;
@@ -77,6 +80,9 @@ class TestModelControllerService extends AbstractControllerService implements Co
     private final ControllerInitializer controllerInitializer;
     private final ExtensionRegistry extensionRegistry;
     private final ContentRepository contentRepository = new MockContentRepository();
+    private volatile String containerName;
+    private volatile String subsystemName;
+    private volatile ConversionListener listener;
 
     /**
      * This is the constructor to use for current subsystem tests
@@ -86,14 +92,16 @@ class TestModelControllerService extends AbstractControllerService implements Co
             final ControllerInitializer controllerInitializer,
             final ExtensionRegistry extensionRegistry,
             final RunningModeControl runningModeControl,
+            final ControlledProcessState processState,
             final StringConfigurationPersister persister,
             final ResourceDefinition resourceDefinition,
             final CapabilityRegistry capabilityRegistry) {
-        super(ProcessType.STANDALONE_SERVER, runningModeControl, persister, new ControlledProcessState(true),
+        super(ProcessType.STANDALONE_SERVER, runningModeControl, persister, processState,
                 resourceDefinition, null, ExpressionResolver.TEST_RESOLVER, AuditLogger.NO_OP_LOGGER,
                 new DelegatingConfigurableAuthorizer(), new ManagementSecurityIdentitySupplier(), capabilityRegistry);
         this.persister = persister;
         this.runningModeControl = runningModeControl;
+        this.processState = processState;
         this.mainExtension = mainExtension;
         this.extensionRegistry = extensionRegistry;
         this.controllerInitializer = controllerInitializer;
@@ -110,12 +118,33 @@ class TestModelControllerService extends AbstractControllerService implements Co
                 controllerInitializer,
                 extensionRegistry,
                 new RunningModeControl(RunningMode.ADMIN_ONLY),
+                new ControlledProcessState(true),
                 persister,
                 new SimpleResourceDefinition(null, NonResolvingResourceDescriptionResolver.INSTANCE),
                 capabilityRegistry);
     }
 
 
+    /**
+     * Sets the details to add to the events recorded while booting
+     *
+     * @param containerName the name of the service container the controller is installed in
+     * @param subsystemName the main subsystem name, may be {@code null}
+     */
+    void setEventDetails(String containerName, String subsystemName) {
+        this.containerName = containerName;
+        this.subsystemName = subsystemName;
+    }
+
+    /**
+     * Sets the listener to report the execution of the boot operations to
+     *
+     * @param listener the listener, may be {@code null}
+     */
+    void setListener(ConversionListener listener) {
+        this.listener = listener;
+    }
+
     public boolean isSuccessfulBoot() {
         return bootSuccess;
     }
@@ -124,6 +153,16 @@ class TestModelControllerService extends AbstractControllerService implements Co
         return error;
     }
 
+    /**
+     * Gets the state of the process, which is {@link ControlledProcessState.State#RUNNING} once the controller has
+     * booted successfully, until an operation puts it into the reload or restart required state
+     *
+     * @return the state
+     */
+    ControlledProcessState.State getProcessState() {
+        return processState.getState();
+    }
+
     RunningMode getRunningMode() {
         return runningModeControl.getRunningMode();
     }
@@ -166,7 +205,17 @@ class TestModelControllerService extends AbstractControllerService implements Co
         try {
             preBoot(bootOperations, rollbackOnRuntimeFailure);
 
-            bootSuccess = super.boot(persister.getBootOperations(), rollbackOnRuntimeFailure);
+            List<ModelNode> operations = persister.getBootOperations();
+            ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.BOOT_OPERATIONS, containerName, subsystemName, mainExtension);
+            try {
+                PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.EXECUTE, subsystemName, null);
+                bootSuccess = super.boot(operations, rollbackOnRuntimeFailure);
+                if (bootSuccess) {
+                    timer.stop(operations.size());
+                }
+            } finally {
+                span.end(operations.size());
+            }
 
             return bootSuccess;
         } catch (Exception e) {
@@ -191,6 +240,9 @@ class TestModelControllerService extends AbstractControllerService implements Co
     protected void bootThreadDone() {
         try {
             super.bootThreadDone();
+            if (bootSuccess) {
+                processState.setRunning();
+            }
         } finally {
             countdownDoneLatch();
         }
@@ -26,6 +26,7 @@ import static org.jboss.as.controller.parsing.ParseUtils.unexpectedElement;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import javax.xml.XMLConstants;
 import javax.xml.stream.XMLStreamException;
 
 import org.jboss.as.controller.extension.ExtensionRegistry;
+import org.jboss.as.controller.extension.SubsystemInformation;
 import org.jboss.as.controller.logging.ControllerLogger;
 import org.jboss.as.controller.parsing.Element;
 import org.jboss.as.controller.parsing.Namespace;
@@ -51,6 +53,7 @@ final class TestParser implements  ModelTestParser {
 
     final ExtensionRegistry extensionRegistry;
     final String mainSubsystemName;
+    private volatile Set<String> subsystemNamespaces;
 
     TestParser(String mainSubsystemName, ExtensionRegistry extensionRegistry) {
         this.mainSubsystemName = mainSubsystemName;
@@ -63,13 +66,15 @@ final class TestParser implements  ModelTestParser {
         String defaultNamespace = writer.getNamespaceContext().getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX);
         try {
             ModelNode subsystems = context.getModelNode().get(SUBSYSTEM);
-            if (subsystems.has(mainSubsystemName)) {
-                ModelNode subsystem = subsystems.get(mainSubsystemName);
-                //We might have been removed
-                XMLElementWriter<SubsystemMarshallingContext> subsystemWriter = context.getSubsystemWriter(mainSubsystemName);
-                if (subsystemWriter != null) {
-                    subsystemWriter.writeContent(writer, new SubsystemMarshallingContext(subsystem, writer));
+            if (mainSubsystemName == null) {
+                //Converting all the subsystems in the document, so write all of them
+                if (subsystems.isDefined()) {
+                    for (String subsystemName : subsystems.keys()) {
+                        writeSubsystem(writer, context, subsystemName, subsystems.get(subsystemName));
+                    }
                 }
+            } else if (subsystems.has(mainSubsystemName)) {
+                writeSubsystem(writer, context, mainSubsystemName, subsystems.get(mainSubsystemName));
             }else{
                 writer.writeEmptyElement(Element.SUBSYSTEM.getLocalName());
             }
@@ -79,19 +84,59 @@ final class TestParser implements  ModelTestParser {
         writer.writeEndDocument();
     }
 
+    private void writeSubsystem(XMLExtendedStreamWriter writer, ModelMarshallingContext context, String subsystemName, ModelNode subsystem) throws XMLStreamException {
+        //We might have been removed
+        XMLElementWriter<SubsystemMarshallingContext> subsystemWriter = context.getSubsystemWriter(subsystemName);
+        if (subsystemWriter != null) {
+            subsystemWriter.writeContent(writer, new SubsystemMarshallingContext(subsystem, writer));
+        }
+    }
+
     @Override
     public void readElement(XMLExtendedStreamReader reader, List<ModelNode> operations) throws XMLStreamException {
 
         ParseUtils.requireNoAttributes(reader);
         final Map<String, List<ModelNode>> profileOps = new LinkedHashMap<String, List<ModelNode>>();
+        readSubsystems(reader, profileOps, false);
+
+        // Let extensions modify the profile
+        Set<ProfileParsingCompletionHandler> completionHandlers = extensionRegistry.getProfileParsingCompletionHandlers();
+        for (ProfileParsingCompletionHandler completionHandler : completionHandlers) {
+            completionHandler.handleProfileParsingCompletion(profileOps, operations);
+        }
+
+        for (List<ModelNode> subsystems : profileOps.values()) {
+            operations.addAll(subsystems);
+        }
+    }
+
+    /**
+     * Reads the subsystems in the current element. These may be wrapped in a {@code <server>} or {@code <profile>}
+     * element, in which case everything else in the server configuration, as well as subsystems which we have no
+     * extension for, is skipped.
+     */
+    private void readSubsystems(XMLExtendedStreamReader reader, Map<String, List<ModelNode>> profileOps, boolean inConfiguration) throws XMLStreamException {
         while (reader.hasNext() && reader.nextTag() != END_ELEMENT) {
-            if (Namespace.forUri(reader.getNamespaceURI()) != Namespace.UNKNOWN) {
-                throw unexpectedElement(reader);
+            Element element = Element.forName(reader.getLocalName());
+            if (element == Element.SERVER || element == Element.PROFILE) {
+                readSubsystems(reader, profileOps, true);
+                continue;
             }
-            if (Element.forName(reader.getLocalName()) != Element.SUBSYSTEM) {
+            if (element != Element.SUBSYSTEM) {
+                if (inConfiguration) {
+                    skipElement(reader);
+                    continue;
+                }
                 throw unexpectedElement(reader);
             }
             String namespace = reader.getNamespaceURI();
+            if (Namespace.forUri(namespace) != Namespace.UNKNOWN) {
+                throw unexpectedElement(reader);
+            }
+            if (inConfiguration && !getSubsystemNamespaces().contains(namespace)) {
+                skipElement(reader);
+                continue;
+            }
             if (profileOps.containsKey(namespace)) {
                 throw ControllerLogger.ROOT_LOGGER.duplicateDeclaration("subsystem", reader.getLocation());
             }
@@ -101,15 +146,33 @@ final class TestParser implements  ModelTestParser {
 
             profileOps.put(namespace, subsystems);
         }
+    }
 
-        // Let extensions modify the profile
-        Set<ProfileParsingCompletionHandler> completionHandlers = extensionRegistry.getProfileParsingCompletionHandlers();
-        for (ProfileParsingCompletionHandler completionHandler : completionHandlers) {
-            completionHandler.handleProfileParsingCompletion(profileOps, operations);
+    private Set<String> getSubsystemNamespaces() {
+        Set<String> namespaces = this.subsystemNamespaces;
+        if (namespaces == null) {
+            namespaces = new HashSet<String>();
+            for (String moduleName : extensionRegistry.getExtensionModuleNames()) {
+                for (SubsystemInformation info : extensionRegistry.getAvailableSubsystems(moduleName).values()) {
+                    namespaces.addAll(info.getXMLNamespaces());
+                }
+            }
+            this.subsystemNamespaces = namespaces;
         }
+        return namespaces;
+    }
 
-        for (List<ModelNode> subsystems : profileOps.values()) {
-            operations.addAll(subsystems);
+    private static void skipElement(XMLExtendedStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case START_ELEMENT:
+                    depth++;
+                    break;
+                case END_ELEMENT:
+                    depth--;
+                    break;
+            }
         }
     }
 }
@@ -1,37 +1,206 @@
 package org.wildfly.util.xml.to.cli.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import javax.xml.stream.XMLInputFactory;
+
 import org.jboss.as.controller.Extension;
 import org.jboss.as.controller.PathAddress;
 import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.registry.ImmutableManagementResourceRegistration;
 import org.jboss.dmr.ModelNode;
+import org.wildfly.util.xml.to.cli.ConversionListener;
+import org.wildfly.util.xml.to.cli.ControllerModels;
+import org.wildfly.util.xml.to.cli.ConversionPhase;
 
 /**
+ * Converts a single document. The controller booted for the conversion is shut down again before
+ * {@link #convertXmlToOperations()} returns.
+ *
  * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
  */
-public class Worker  {
+public class Worker implements AutoCloseable {
 
     private final SubsystemTestDelegate delegate;
-    private final String xml;
-
+    private final XmlSource xml;
+    private ConversionListener listener;
+    private boolean verifyRoundTrip;
 
     public Worker(String mainSubsystemName, Extension mainExtension, String xml) {
+        this(mainSubsystemName, mainExtension, XmlSource.of(xml));
+    }
+
+    public Worker(String mainSubsystemName, Extension mainExtension, XmlSource xml) {
         this.delegate = new SubsystemTestDelegate(mainSubsystemName, mainExtension);
         this.xml = xml;
     }
 
+    /**
+     * Creates a worker converting all the subsystems in a document, which may be a full server configuration
+     * or a profile. The subsystems are output so that those providing capabilities come before those requiring them.
+     *
+     * @param extensions the extensions for the subsystems
+     * @param xml the xml
+     */
+    public Worker(Collection<Extension> extensions, XmlSource xml) {
+        this(null, new CompositeExtension(extensions), xml);
+    }
+
+    /**
+     * Sets the StAX implementation to read the xml with. By default a shared, configured instance of the default
+     * implementation is used.
+     *
+     * @param xmlInputFactory the factory
+     */
+    public void setXmlInputFactory(XMLInputFactory xmlInputFactory) {
+        delegate.setXmlInputFactory(xmlInputFactory);
+    }
+
+    /**
+     * Sets the factory for the service container the controller is installed in. By default the controller gets
+     * a container of its own.
+     *
+     * @param containerFactory the factory
+     */
+    public void setContainerFactory(ContainerFactory containerFactory) {
+        delegate.setContainerFactory(containerFactory);
+    }
+
+    /**
+     * Sets the cache to get the parser from. By default the parser is set up for each conversion.
+     *
+     * @param parserCache the cache
+     */
+    public void setParserCache(ParserCache parserCache) {
+        delegate.setParserCache(parserCache);
+    }
+
+    /**
+     * Sets the parts of the model outside the subsystem to set up in the controller. By default there are none.
+     *
+     * @param controllerModels the models
+     */
+    public void setControllerModels(ControllerModels controllerModels) {
+        delegate.setControllerModels(controllerModels);
+    }
+
+    /**
+     * Sets whether to check that the booted model marshals back to the xml, see
+     * {@link RoundTripVerifier}. This is off by default, since it reads the whole xml into memory and marshals
+     * the model.
+     *
+     * @param verifyRoundTrip whether to verify the round trip
+     */
+    public void setVerifyRoundTrip(boolean verifyRoundTrip) {
+        this.verifyRoundTrip = verifyRoundTrip;
+    }
+
+    /**
+     * Sets the listener to report the conversion phases to
+     *
+     * @param listener the listener
+     */
+    public void setListener(ConversionListener listener) {
+        this.listener = listener;
+    }
+
     public List<ModelNode> convertXmlToOperations() throws Exception {
-        delegate.initializeParser();
-        final KernelServices services =
-                delegate.createKernelServicesBuilder().setSubsystemXml(xml).build();
-        if (!services.isSuccessfulBoot()) {
-            throw new IllegalStateException("The XML does not appear to be valid.");
+        final String mainSubsystemName = delegate.getMainSubsystemName();
+        try {
+            // The xml is needed again to compare with the marshalled model, so read it first
+            final String input = verifyRoundTrip ? xml.readFully() : null;
+            final XmlSource xml = input == null ? this.xml : XmlSource.of(input);
+            PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.PARSE, mainSubsystemName, xml);
+            delegate.initializeParser();
+            final List<ModelNode> bootOperations = delegate.parse(xml);
+            timer.stop(bootOperations.size());
+
+            final List<String> documentOrder = mainSubsystemName == null ? SubsystemOrder.documentOrder(bootOperations) : null;
+            timer = PhaseTimer.start(listener, ConversionPhase.BOOT, mainSubsystemName, null);
+            final KernelServices services =
+                    delegate.createKernelServicesBuilder().setBootOperations(bootOperations).setPersistXml(verifyRoundTrip)
+                            .setListener(listener).build();
+            if (!services.isSuccessfulBoot()) {
+                throw new IllegalStateException("The XML does not appear to be valid.");
+            }
+            if (verifyRoundTrip) {
+                RoundTripVerifier.verify(input, services.getPersistedSubsystemXml());
+            }
+            timer.stop(bootOperations.size());
+
+            timer = PhaseTimer.start(listener, ConversionPhase.DESCRIBE, mainSubsystemName, null);
+            List<ModelNode> operations;
+            if (documentOrder == null) {
+                operations = describe(services, mainSubsystemName);
+            } else {
+                operations = new ArrayList<>();
+                for (String subsystemName : SubsystemOrder.dependencyOrder(documentOrder, services.getRootRegistration())) {
+                    operations.addAll(describe(services, subsystemName));
+                }
+            }
+            timer.stop(operations.size());
+            return operations;
+        } finally {
+            delegate.cleanup();
+        }
+    }
+
+    private List<ModelNode> describe(KernelServices services, String subsystemName) throws Exception {
+        ControllerEvents.Span span = ControllerEvents.begin(ControllerEvents.Kind.DESCRIBE,
+                services.getContainer().getName(), subsystemName, delegate.getMainExtension());
+        int count = -1;
+        try {
+            ModelNode op = Util.createOperation("describe", PathAddress.pathAddress("subsystem", subsystemName));
+            List<ModelNode> operations = services.executeForResult(op).asList();
+            count = operations.size();
+            return operations;
+        } finally {
+            span.end(count);
         }
+    }
 
-        ModelNode op = Util.createOperation("describe", PathAddress.pathAddress("subsystem", delegate.getMainSubsystemName()));
-        ModelNode result = services.executeForResult(op);
+    /**
+     * Parses the xml and returns the parsed operations as they are, without booting a controller. The operations
+     * are only checked against the resources and operations registered by the extension. When converting all the
+     * subsystems in a document, they are put in the same order as {@link #convertXmlToOperations()} uses.
+     *
+     * @return the parsed operations
+     */
+    public List<ModelNode> parseXmlToOperations() throws Exception {
+        try {
+            PhaseTimer timer = PhaseTimer.start(listener, ConversionPhase.PARSE, delegate.getMainSubsystemName(), xml);
+            delegate.initializeParser();
+            List<ModelNode> operations = delegate.parse(xml);
+            ImmutableManagementResourceRegistration rootRegistration = delegate.createRegistrationModel();
+            delegate.validateOperations(operations, rootRegistration);
+            if (delegate.getMainSubsystemName() == null) {
+                operations = SubsystemOrder.sortOperations(operations, rootRegistration);
+            }
+            timer.stop(operations.size());
+            return operations;
+        } finally {
+            delegate.cleanup();
+        }
+    }
+
+    /**
+     * Creates the resources and operations registered by the extension, without booting a controller
+     *
+     * @return the root resource registration
+     */
+    public ImmutableManagementResourceRegistration createRegistrationModel() throws Exception {
+        try {
+            delegate.initializeParser();
+            return delegate.createRegistrationModel();
+        } finally {
+            delegate.cleanup();
+        }
+    }
 
-        return result.asList();
+    @Override
+    public void close() throws Exception {
+        delegate.cleanup();
     }
 }
@@ -0,0 +1,52 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import javax.xml.stream.XMLInputFactory;
+
+/**
+ * Internal class.
+ * Holds the {@link XMLInputFactory} shared by all conversions, so that we don't look up and configure a new
+ * factory for each document. Once configured, the factories are only used to create readers, which is thread safe.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public final class XmlInputFactories {
+
+    private static final XMLInputFactory DEFAULT = configure(XMLInputFactory.newInstance());
+
+    private XmlInputFactories() {
+    }
+
+    /**
+     * Gets the shared factory, which is the default StAX implementation with the settings from
+     * {@link #configure(XMLInputFactory)}
+     *
+     * @return the shared factory
+     */
+    static XMLInputFactory getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Configures a factory for parsing subsystem xml. Coalescing is turned off since the parsers don't need it,
+     * and DTDs and external entities are disabled since subsystem xml does not use them. Properties which the
+     * implementation does not support are left alone.
+     * <p>
+     * The properties are set on the passed in factory itself, so anything else creating readers with it gets these
+     * settings too. Pass a factory which is not shared with code needing other settings.
+     *
+     * @param factory the factory, which is changed
+     * @return the passed in factory
+     */
+    public static XMLInputFactory configure(XMLInputFactory factory) {
+        setIfSupported(factory, XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        setIfSupported(factory, XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        setIfSupported(factory, XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    private static void setIfSupported(XMLInputFactory factory, String property, Object value) {
+        if (factory.isPropertySupported(property)) {
+            factory.setProperty(property, value);
+        }
+    }
+}
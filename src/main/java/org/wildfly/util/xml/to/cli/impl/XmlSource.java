@@ -0,0 +1,208 @@
+package org.wildfly.util.xml.to.cli.impl;
+
+import java.io.BufferedInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where the subsystem xml is read from. Other than for strings the xml is streamed into the parser, rather than
+ * being read into memory first. Sources wrapping a {@link Reader} or an {@link InputStream} can only be read once,
+ * and are not closed; that is left to whoever passed them in.
+ * <p>
+ * Bytes are decoded with the encoding given by the byte order mark or the xml declaration, as described in
+ * appendix F of the XML specification, or as UTF-8 if there is neither. This has to be worked out here since the
+ * declaration is dropped when the xml is wrapped in the document given to the parser.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public abstract class XmlSource {
+
+    /** Enough bytes for the xml declaration, which may be UTF-16 encoded */
+    private static final int DECLARATION_BYTES = 256;
+
+    private static final Pattern DECLARED_ENCODING = Pattern.compile("^<\\?xml\\s[^>]*?encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._\\-]*)[\"']");
+
+    private XmlSource() {
+    }
+
+    public static XmlSource of(String xml) {
+        return new XmlSource() {
+            @Override
+            Reader openReader() {
+                return new StringReader(xml);
+            }
+
+            @Override
+            public String readFully() {
+                return xml;
+            }
+
+            @Override
+            long size() {
+                return xml.length();
+            }
+        };
+    }
+
+    public static XmlSource of(Path path) {
+        return new XmlSource() {
+            @Override
+            Reader openReader() throws IOException {
+                return newReader(new BufferedInputStream(Files.newInputStream(path)));
+            }
+
+            @Override
+            long size() {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return -1;
+                }
+            }
+        };
+    }
+
+    public static XmlSource of(Reader reader) {
+        return new SingleUseXmlSource(reader, null);
+    }
+
+    public static XmlSource of(InputStream in) {
+        return new SingleUseXmlSource(null, in);
+    }
+
+    /**
+     * Opens a reader for the xml. The caller must close it.
+     *
+     * @return the reader
+     */
+    abstract Reader openReader() throws IOException;
+
+    /**
+     * Gets the size of the xml, which is the number of characters for strings and the number of bytes for files
+     *
+     * @return the size, or {@code -1} if it is not known without reading the xml
+     */
+    long size() {
+        return -1;
+    }
+
+    /**
+     * Reads all of the xml into memory. For single use sources this uses up the source.
+     *
+     * @return the xml
+     */
+    public String readFully() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (Reader reader = openReader()) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Opens a reader for the stream, decoding it with the encoding given by its byte order mark or xml declaration.
+     * The byte order mark is skipped.
+     *
+     * @param in the stream
+     * @return the reader
+     * @throws UnsupportedEncodingException if the declared encoding is not supported
+     */
+    private static Reader newReader(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        byte[] start = new byte[DECLARATION_BYTES];
+        in.mark(start.length);
+        int length = 0;
+        int read;
+        while (length < start.length && (read = in.read(start, length, start.length - length)) != -1) {
+            length += read;
+        }
+        in.reset();
+
+        Charset charset = StandardCharsets.UTF_8;
+        int bom = 0;
+        if (startsWith(start, length, 0xEF, 0xBB, 0xBF)) {
+            bom = 3;
+        } else if (startsWith(start, length, 0xFE, 0xFF)) {
+            charset = StandardCharsets.UTF_16BE;
+            bom = 2;
+        } else if (startsWith(start, length, 0xFF, 0xFE)) {
+            charset = StandardCharsets.UTF_16LE;
+            bom = 2;
+        } else if (startsWith(start, length, 0x00, 0x3C, 0x00, 0x3F)) {
+            charset = StandardCharsets.UTF_16BE;
+        } else if (startsWith(start, length, 0x3C, 0x00, 0x3F, 0x00)) {
+            charset = StandardCharsets.UTF_16LE;
+        } else {
+            // Without a byte order mark the declaration can change the encoding of ASCII compatible documents.
+            // For the others the byte order mark or the UTF-16 declaration decides.
+            Matcher matcher = DECLARED_ENCODING.matcher(new String(start, 0, length, StandardCharsets.ISO_8859_1));
+            if (matcher.find()) {
+                String declared = matcher.group(1);
+                try {
+                    charset = Charset.forName(declared);
+                } catch (IllegalArgumentException e) {
+                    throw new UnsupportedEncodingException(declared);
+                }
+            }
+        }
+        for (int i = 0; i < bom; i++) {
+            in.read();
+        }
+        return new InputStreamReader(in, charset);
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class SingleUseXmlSource extends XmlSource {
+        private final Reader reader;
+        private final InputStream in;
+        private final AtomicBoolean read = new AtomicBoolean();
+
+        SingleUseXmlSource(Reader reader, InputStream in) {
+            this.reader = reader;
+            this.in = in;
+        }
+
+        @Override
+        Reader openReader() throws IOException {
+            if (!read.compareAndSet(false, true)) {
+                throw new IllegalStateException("The xml has already been read");
+            }
+            // The encoding of a stream is only worked out when reading, since that needs the first bytes
+            return new FilterReader(reader == null ? newReader(in) : reader) {
+                @Override
+                public void close() {
+                    // The reader belongs to the caller
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.wildfly.util.xml.to.cli;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.wildfly.util.xml.to.cli.subsystem.SimpleSubsystemExtension;
+
+/**
+ * Checks that converting lots of documents does not leave containers, threads or heap behind. This takes a while,
+ * so it only runs when the number of conversions is set with the {@code xml.to.cli.leak.iterations} system
+ * property, or with the {@code leak-test} profile.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class ContainerLeakTestCase {
+
+    private static final int ITERATIONS = Integer.getInteger("xml.to.cli.leak.iterations", 0);
+    private static final int WARMUP = Math.min(100, ITERATIONS / 10);
+    private static final int THREAD_TOLERANCE = 5;
+    private static final long HEAP_TOLERANCE = 32 * 1024 * 1024;
+
+    @Test
+    public void testNoLeaks() throws Exception {
+        Assume.assumeTrue("Set xml.to.cli.leak.iterations to run the leak test", ITERATIONS > 0);
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        int baselineThreads = 0;
+        long baselineHeap = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (i == WARMUP) {
+                Assert.assertTrue(WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+                baselineThreads = threads.getThreadCount();
+                baselineHeap = usedHeap();
+            }
+            WildFlyXmlToCli.builder()
+                    .setXml(subsystemXml)
+                    .setExtension(new SimpleSubsystemExtension())
+                    .setSubsystemName("mysubsystem")
+                    .build()
+                    .convertXmlToCli();
+            // The container is still tracked until it has terminated in the background
+            Assert.assertTrue("Iteration " + i, WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+            Assert.assertEquals("Iteration " + i, 0, WildFlyXmlToCli.getLiveContainerCount());
+        }
+
+        Assert.assertTrue(WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+        int threadCount = threads.getThreadCount();
+        Assert.assertTrue("Thread count grew from " + baselineThreads + " to " + threadCount,
+                threadCount <= baselineThreads + THREAD_TOLERANCE);
+        long heap = usedHeap();
+        Assert.assertTrue("Retained heap grew from " + baselineHeap + " to " + heap,
+                heap <= baselineHeap + HEAP_TOLERANCE);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
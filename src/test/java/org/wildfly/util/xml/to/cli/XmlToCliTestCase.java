@@ -1,11 +1,62 @@
 package org.wildfly.util.xml.to.cli;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import javax.xml.stream.EventFilter;
+import javax.xml.stream.StreamFilter;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLReporter;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.XMLEventAllocator;
+import javax.xml.transform.Source;
+
+import org.jboss.as.controller.ModelOnlyWriteAttributeHandler;
 import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.ProcessType;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.SimpleResourceDefinition;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.ValueExpression;
 import org.junit.Assert;
 import org.junit.Test;
+import org.wildfly.util.xml.to.cli.impl.ClientExecutors;
+import org.wildfly.util.xml.to.cli.impl.ContainerTracker;
+import org.wildfly.util.xml.to.cli.impl.OperationsDiff;
+import org.wildfly.util.xml.to.cli.impl.ParserCache;
+import org.wildfly.util.xml.to.cli.impl.XmlInputFactories;
+import org.wildfly.util.xml.to.cli.subsystem.ChildSubsystemExtension;
+import org.wildfly.util.xml.to.cli.subsystem.ConsumerSubsystemExtension;
+import org.wildfly.util.xml.to.cli.subsystem.LossySubsystemExtension;
+import org.wildfly.util.xml.to.cli.subsystem.ProviderSubsystemExtension;
+import org.wildfly.util.xml.to.cli.subsystem.ServiceSubsystemExtension;
 import org.wildfly.util.xml.to.cli.subsystem.SimpleSubsystemExtension;
 
 /**
@@ -34,4 +85,1192 @@ public class XmlToCliTestCase {
         Assert.assertEquals("add", op.get("operation").asString());
         Assert.assertEquals(PathAddress.pathAddress("subsystem", "mysubsystem"), PathAddress.pathAddress(op.get("address")));
     }
+
+    @Test
+    public void testCliToAppendable() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                .build();
+
+        StringWriter writer = new StringWriter();
+        util.convertXmlToCli(writer);
+
+        Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", writer.toString());
+        Assert.assertEquals(writer.toString(), util.convertXmlToCli());
+    }
+
+    @Test
+    public void testCliToFile() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        Path directory = Files.createTempDirectory("xml-to-cli-out");
+        Path out = directory.resolve("out.cli");
+        try {
+            Files.write(out, "previous".getBytes(StandardCharsets.UTF_8));
+
+            // A failed conversion leaves the existing file alone
+            try {
+                WildFlyXmlToCli.builder()
+                        .setXml("<subsystem")
+                        .setExtension(new SimpleSubsystemExtension())
+                        .setSubsystemName("mysubsystem")
+                        .build()
+                        .convertXmlToCli(out);
+                Assert.fail("Expected the conversion to fail");
+            } catch (Exception expected) {
+            }
+            Assert.assertEquals("previous", new String(Files.readAllBytes(out), StandardCharsets.UTF_8));
+
+            WildFlyXmlToCli.builder()
+                    .setXml(subsystemXml)
+                    .setExtension(new SimpleSubsystemExtension())
+                    .setSubsystemName("mysubsystem")
+                    .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                    .build()
+                    .convertXmlToCli(out);
+            Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", new String(Files.readAllBytes(out), StandardCharsets.UTF_8));
+        } finally {
+            // Only the script is left behind, no temporary files
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Assert.assertEquals(out, file);
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testStreamedXml() throws Exception {
+        String subsystemXml =
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(new ByteArrayInputStream(subsystemXml.getBytes(StandardCharsets.UTF_8)))
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build();
+
+        List<ModelNode> operations = util.convertXmlToOperations();
+
+        Assert.assertEquals(1, operations.size());
+        Assert.assertEquals(PathAddress.pathAddress("subsystem", "mysubsystem"), PathAddress.pathAddress(operations.get(0).get("address")));
+    }
+
+    @Test
+    public void testStreamedXmlEncoding() throws Exception {
+        String declaration = "<?xml version=\"1.0\" encoding=\"%s\"?>\n";
+        String subsystemXml = "<subsystem xmlns=\"" + ChildSubsystemExtension.NAMESPACE + "\" value=\"caf\u00e9\"/>";
+
+        // The declared encoding is used when there is no byte order mark
+        byte[] latin1 = (String.format(declaration, "ISO-8859-1") + subsystemXml).getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertEquals("caf\u00e9", convertEncodedXml(new ByteArrayInputStream(latin1)));
+
+        // A byte order mark decides the encoding, and is skipped
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] utf8 = subsystemXml.getBytes(StandardCharsets.UTF_8);
+        byte[] utf8WithBom = new byte[bom.length + utf8.length];
+        System.arraycopy(bom, 0, utf8WithBom, 0, bom.length);
+        System.arraycopy(utf8, 0, utf8WithBom, bom.length, utf8.length);
+        Assert.assertEquals("caf\u00e9", convertEncodedXml(new ByteArrayInputStream(utf8WithBom)));
+
+        // Java's UTF-16 encoder writes a big endian byte order mark
+        Path file = Files.createTempFile("xml-to-cli-encoding", ".xml");
+        try {
+            Files.write(file, (String.format(declaration, "UTF-16") + subsystemXml).getBytes(StandardCharsets.UTF_16));
+            Assert.assertEquals("caf\u00e9", WildFlyXmlToCli.builder()
+                    .setXml(file)
+                    .setExtension(new ChildSubsystemExtension())
+                    .setSubsystemName(ChildSubsystemExtension.SUBSYSTEM_NAME)
+                    .build()
+                    .convertXmlToOperations().get(0).get("value").asString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String convertEncodedXml(InputStream in) throws Exception {
+        return WildFlyXmlToCli.builder()
+                .setXml(in)
+                .setExtension(new ChildSubsystemExtension())
+                .setSubsystemName(ChildSubsystemExtension.SUBSYSTEM_NAME)
+                .build()
+                .convertXmlToOperations().get(0).get("value").asString();
+    }
+
+    @Test
+    public void testXmlInputFactory() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        RecordingXmlInputFactory factory = new RecordingXmlInputFactory(XMLInputFactory.newInstance());
+
+        String cli = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setXmlInputFactory(factory)
+                .build()
+                .convertXmlToCli();
+        Assert.assertTrue(cli, cli.contains("/subsystem=mysubsystem:add"));
+        Assert.assertEquals(1, factory.readers);
+        // The passed in factory is configured in place
+        Assert.assertEquals(Boolean.FALSE, factory.getProperty(XMLInputFactory.SUPPORT_DTD));
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setXmlInputFactory(factory)
+                .build()) {
+            Assert.assertEquals(cli, engine.convertXmlToCli(subsystemXml));
+        }
+        Assert.assertEquals(2, factory.readers);
+    }
+
+    @Test
+    public void testExternalEntitiesRejected() throws Exception {
+        Path secret = Files.createTempFile("xml-to-cli-secret", ".txt");
+        try {
+            Files.write(secret, "secret-content".getBytes(StandardCharsets.UTF_8));
+            String xml =
+                    "<!DOCTYPE subsystem [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]>" +
+                    "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">&xxe;</subsystem>";
+
+            XMLInputFactory factory = XmlInputFactories.configure(XMLInputFactory.newInstance());
+            XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(xml));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.CHARACTERS) {
+                        Assert.assertFalse(reader.getText().contains("secret-content"));
+                    }
+                }
+                Assert.fail("The external entity was not rejected");
+            } catch (XMLStreamException expected) {
+                Assert.assertFalse(String.valueOf(expected.getMessage()).contains("secret-content"));
+            } finally {
+                reader.close();
+            }
+        } finally {
+            Files.delete(secret);
+        }
+    }
+
+    @Test
+    public void testParseOnly() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setConversionMode(WildFlyXmlToCli.ConversionMode.PARSE_ONLY)
+                .build();
+
+        List<ModelNode> operations = util.convertXmlToOperations();
+
+        Assert.assertEquals(1, operations.size());
+        ModelNode op = operations.get(0);
+        Assert.assertEquals("add", op.get("operation").asString());
+        Assert.assertEquals(PathAddress.pathAddress("subsystem", "mysubsystem"), PathAddress.pathAddress(op.get("address")));
+        // Nothing was booted, but containers from earlier conversions may still be terminating
+        Assert.assertTrue(WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, WildFlyXmlToCli.getLiveContainerCount());
+    }
+
+    @Test
+    public void testEngineReuse() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build()) {
+            for (int i = 0; i < 3; i++) {
+                WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                        .setEngine(engine)
+                        .setXml(subsystemXml)
+                        .build();
+
+                List<ModelNode> operations = util.convertXmlToOperations();
+
+                Assert.assertEquals(1, operations.size());
+                ModelNode op = operations.get(0);
+                Assert.assertEquals("add", op.get("operation").asString());
+                Assert.assertEquals(PathAddress.pathAddress("subsystem", "mysubsystem"), PathAddress.pathAddress(op.get("address")));
+            }
+        }
+    }
+
+    @Test
+    public void testEngineConcurrentConversions() throws Exception {
+        final String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setPoolSize(2)
+                .build()) {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> engine.convertXmlToCli(subsystemXml)));
+            }
+            String expected = futures.get(0).get();
+            Assert.assertTrue(expected, expected.contains("/subsystem=mysubsystem:add()"));
+            for (Future<String> future : futures) {
+                Assert.assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testServerConfiguration() throws Exception {
+        String serverXml =
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<server xmlns=\"urn:jboss:domain:10.0\">" +
+                "<extensions><extension module=\"org.jboss.as.logging\"/></extensions>" +
+                "<profile>" +
+                "<subsystem xmlns=\"urn:jboss:domain:logging:8.0\"><console-handler name=\"CONSOLE\"/></subsystem>" +
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\"></subsystem>" +
+                "</profile>" +
+                "<interfaces><interface name=\"public\"><inet-address value=\"127.0.0.1\"/></interface></interfaces>" +
+                "</server>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(serverXml)
+                .addExtension(new SimpleSubsystemExtension())
+                .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                .build();
+
+        List<ModelNode> operations = util.convertXmlToOperations();
+
+        Assert.assertEquals(1, operations.size());
+        Assert.assertEquals(PathAddress.pathAddress("subsystem", "mysubsystem"), PathAddress.pathAddress(operations.get(0).get("address")));
+        Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", util.convertXmlToCli());
+    }
+
+    @Test
+    public void testServerConfigurationDependencyOrder() throws Exception {
+        // The consumer subsystem requires the provider's capability, but comes first in the document
+        String serverXml =
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<server xmlns=\"urn:jboss:domain:10.0\">" +
+                "<profile>" +
+                "<subsystem xmlns=\"" + ConsumerSubsystemExtension.NAMESPACE + "\" provider=\"" + ProviderSubsystemExtension.SUBSYSTEM_NAME + "\"/>" +
+                "<subsystem xmlns=\"" + ProviderSubsystemExtension.NAMESPACE + "\"/>" +
+                "</profile>" +
+                "</server>";
+
+        for (WildFlyXmlToCli.ConversionMode mode : WildFlyXmlToCli.ConversionMode.values()) {
+            List<ModelNode> operations = WildFlyXmlToCli.builder()
+                    .setXml(serverXml)
+                    .addExtension(new ConsumerSubsystemExtension())
+                    .addExtension(new ProviderSubsystemExtension())
+                    .setConversionMode(mode)
+                    .build()
+                    .convertXmlToOperations();
+
+            Assert.assertEquals(mode.toString(), 2, operations.size());
+            Assert.assertEquals(mode.toString(), PathAddress.pathAddress("subsystem", ProviderSubsystemExtension.SUBSYSTEM_NAME),
+                    PathAddress.pathAddress(operations.get(0).get("address")));
+            Assert.assertEquals(mode.toString(), PathAddress.pathAddress("subsystem", ConsumerSubsystemExtension.SUBSYSTEM_NAME),
+                    PathAddress.pathAddress(operations.get(1).get("address")));
+            Assert.assertEquals(mode.toString(), ProviderSubsystemExtension.SUBSYSTEM_NAME, operations.get(1).get("provider").asString());
+        }
+    }
+
+    @Test
+    public void testConvertAll() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Path path = Files.createTempFile("xml-to-cli", ".xml");
+            // Make one of the documents invalid
+            Files.write(path, (i == 3 ? "<subsystem" : subsystemXml).getBytes(StandardCharsets.UTF_8));
+            paths.add(path);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                    .setExtension(new SimpleSubsystemExtension())
+                    .setSubsystemName("mysubsystem")
+                    .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                    .build();
+
+            List<ConversionResult> results = util.convertAll(paths, executor);
+
+            Assert.assertEquals(paths.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                ConversionResult result = results.get(i);
+                Assert.assertEquals(paths.get(i), result.getPath());
+                if (i == 3) {
+                    Assert.assertFalse(result.isSuccessful());
+                    Assert.assertNotNull(result.getError());
+                } else {
+                    Assert.assertTrue(result.toString(), result.isSuccessful());
+                    Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", result.getCli());
+                }
+            }
+            Assert.assertTrue(WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, WildFlyXmlToCli.getLiveContainerCount());
+        } finally {
+            executor.shutdown();
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertAllMatchesSingleConversions() throws Exception {
+        ControllerModels models = ControllerModels.builder()
+                .addSocketBinding("http", 8080)
+                .build();
+        WildFlyXmlToCli.Builder builder = WildFlyXmlToCli.builder()
+                .setExtension(new ServiceSubsystemExtension())
+                .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                .setControllerModels(models);
+        List<Path> paths = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int i = 0; i < 6; i++) {
+                StringBuilder subsystemXml = new StringBuilder("<subsystem xmlns=\"" + ServiceSubsystemExtension.NAMESPACE + "\"");
+                if (i % 2 == 0) {
+                    subsystemXml.append(" socket-binding=\"http\"");
+                }
+                subsystemXml.append(">");
+                for (int j = 0; j < i; j++) {
+                    subsystemXml.append("<item name=\"item").append(j).append("\" value=\"").append(i).append("\"/>");
+                }
+                subsystemXml.append("</subsystem>");
+                Path path = Files.createTempFile("xml-to-cli", ".xml");
+                Files.write(path, subsystemXml.toString().getBytes(StandardCharsets.UTF_8));
+                paths.add(path);
+            }
+
+            List<ConversionResult> results = builder.build().convertAll(paths, executor);
+            for (int i = 0; i < paths.size(); i++) {
+                Assert.assertTrue(results.get(i).toString(), results.get(i).isSuccessful());
+                String single = builder.setXml(paths.get(i)).build().convertXmlToCli();
+                Assert.assertEquals(single, results.get(i).getCli());
+            }
+        } finally {
+            executor.shutdown();
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testEngineMatchesBoot() throws Exception {
+        ControllerModels models = ControllerModels.builder()
+                .addSocketBinding("http", 8080)
+                .addPath("test.dir", System.getProperty("java.io.tmpdir"), null)
+                .build();
+        String[] subsystemXmls = {
+                "<subsystem xmlns=\"" + ServiceSubsystemExtension.NAMESPACE + "\" socket-binding=\"http\" path=\"test.dir\">" +
+                "    <item name=\"a\" value=\"1\"/>" +
+                "    <item name=\"b\" value=\"${test.value:2}\"/>" +
+                "</subsystem>",
+                // Nothing from the first document may be left over in the controller
+                "<subsystem xmlns=\"" + ServiceSubsystemExtension.NAMESPACE + "\">" +
+                "    <item name=\"c\" value=\"3\"/>" +
+                "</subsystem>"
+        };
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new ServiceSubsystemExtension())
+                .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                .setControllerModels(models)
+                .build()) {
+            for (int i = 0; i < 2; i++) {
+                for (String subsystemXml : subsystemXmls) {
+                    String booted = WildFlyXmlToCli.builder()
+                            .setXml(subsystemXml)
+                            .setExtension(new ServiceSubsystemExtension())
+                            .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                            .setControllerModels(models)
+                            .build()
+                            .convertXmlToCli();
+                    Assert.assertEquals(booted, engine.convertXmlToCli(subsystemXml));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testContainerThreads() throws Exception {
+        // The subsystem installs a service under a fixed name, so each controller needs a container of its own
+        String subsystemXml =
+                "<subsystem xmlns=\"" + ServiceSubsystemExtension.NAMESPACE + "\">" +
+                "    <item name=\"a\" value=\"1\"/>" +
+                "</subsystem>";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                    .setExtension(new ServiceSubsystemExtension())
+                    .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                    .setPoolSize(4)
+                    .setContainerThreads(2)
+                    .build()) {
+                List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    futures.add(executor.submit(() -> engine.convertXmlToCli(subsystemXml)));
+                }
+                for (Future<String> future : futures) {
+                    Assert.assertTrue(future.get().contains("/subsystem=servicesubsystem/item=a:add(value=\"1\")"));
+                }
+            }
+
+            List<Path> paths = new ArrayList<>();
+            try {
+                for (int i = 0; i < 4; i++) {
+                    Path path = Files.createTempFile("xml-to-cli-threads", ".xml");
+                    Files.write(path, subsystemXml.getBytes(StandardCharsets.UTF_8));
+                    paths.add(path);
+                }
+                List<ConversionResult> results = WildFlyXmlToCli.builder()
+                        .setExtension(new ServiceSubsystemExtension())
+                        .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                        .setContainerThreads(2)
+                        .build()
+                        .convertAll(paths, executor);
+                for (ConversionResult result : results) {
+                    Assert.assertTrue(result.toString(), result.getCli().contains("/subsystem=servicesubsystem/item=a:add(value=\"1\")"));
+                }
+            } finally {
+                for (Path path : paths) {
+                    Files.delete(path);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // The containers are shut down along with the engine and the batch
+        Assert.assertTrue(WildFlyXmlToCli.awaitContainerShutdown(10, TimeUnit.SECONDS));
+        Assert.assertEquals(ContainerTracker.getLiveContainerNames().toString(), 0, WildFlyXmlToCli.getLiveContainerCount());
+    }
+
+    @Test
+    public void testVerifyRoundTrip() throws Exception {
+        String subsystemXml =
+                "<!-- Comments are not part of the model -->\n" +
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">\n" +
+                "</subsystem>";
+
+        String cli = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setVerifyRoundTrip(true)
+                .build()
+                .convertXmlToCli();
+        Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", cli);
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build()) {
+            for (int i = 0; i < 2; i++) {
+                List<ModelNode> operations = WildFlyXmlToCli.builder()
+                        .setEngine(engine)
+                        .setXml(subsystemXml)
+                        .setVerifyRoundTrip(i == 0)
+                        .build()
+                        .convertXmlToOperations();
+                Assert.assertEquals(1, operations.size());
+            }
+        }
+    }
+
+    @Test
+    public void testVerifyRoundTripFailure() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + LossySubsystemExtension.NAMESPACE + "\" name=\"dropped\">" +
+                "</subsystem>";
+
+        // Without verification the attribute makes it into the operations
+        ConversionCache cache = ConversionCache.builder().build();
+        WildFlyXmlToCli.Builder builder = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new LossySubsystemExtension())
+                .setSubsystemName(LossySubsystemExtension.SUBSYSTEM_NAME)
+                .setBatchOperations(false)
+                .setCache(cache);
+        Assert.assertEquals("/subsystem=lossysubsystem:add(name=\"dropped\")\n\n", builder.build().convertXmlToCli());
+
+        // The script cached without verifying must not be used when verifying
+        try {
+            builder.setVerifyRoundTrip(true).build().convertXmlToCli();
+            Assert.fail("The xml should not survive the round trip");
+        } catch (IllegalStateException expected) {
+            assertRoundTripFailure(expected);
+        }
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new LossySubsystemExtension())
+                .setSubsystemName(LossySubsystemExtension.SUBSYSTEM_NAME)
+                .build()) {
+            try {
+                WildFlyXmlToCli.builder()
+                        .setEngine(engine)
+                        .setXml(subsystemXml)
+                        .setVerifyRoundTrip(true)
+                        .build()
+                        .convertXmlToOperations();
+                Assert.fail("The xml should not survive the round trip");
+            } catch (IllegalStateException expected) {
+                assertRoundTripFailure(expected);
+            }
+            // The controller was reset, so the next conversion works
+            Assert.assertEquals(1, WildFlyXmlToCli.builder()
+                    .setEngine(engine)
+                    .setXml(subsystemXml)
+                    .build()
+                    .convertXmlToOperations()
+                    .size());
+        }
+    }
+
+    private static void assertRoundTripFailure(IllegalStateException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().startsWith(
+                "The " + LossySubsystemExtension.NAMESPACE + " subsystem does not marshal back to the input xml:"));
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("name=dropped"));
+    }
+
+    @Test
+    public void testControllerModels() throws Exception {
+        // The subsystem checks that the socket binding and path it references are in the model
+        String subsystemXml =
+                "<subsystem xmlns=\"" + ServiceSubsystemExtension.NAMESPACE + "\" socket-binding=\"http\" path=\"test.dir\">" +
+                "</subsystem>";
+        ControllerModels models = ControllerModels.builder()
+                .addSocketBinding("http", 8080)
+                .addPath("test.dir", System.getProperty("java.io.tmpdir"), null)
+                .build();
+
+        List<ModelNode> operations = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new ServiceSubsystemExtension())
+                .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                .setControllerModels(models)
+                .build()
+                .convertXmlToOperations();
+        Assert.assertEquals(1, operations.size());
+        Assert.assertEquals("http", operations.get(0).get("socket-binding").asString());
+        Assert.assertEquals("test.dir", operations.get(0).get("path").asString());
+
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new ServiceSubsystemExtension())
+                .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                .setControllerModels(models)
+                .build()) {
+            Assert.assertEquals(operations, WildFlyXmlToCli.builder()
+                    .setEngine(engine)
+                    .setXml(subsystemXml)
+                    .build()
+                    .convertXmlToOperations());
+        }
+
+        // Nothing is set up by default, and only what is declared otherwise
+        assertControllerModelsMissing(subsystemXml, ControllerModels.NONE, "No socket binding called http");
+        assertControllerModelsMissing(subsystemXml, ControllerModels.builder().addSocketBinding("http", 8080).build(), "No path called test.dir");
+        assertControllerModelsMissing(subsystemXml, ControllerModels.builder().addPath("test.dir", "/tmp", null).build(), "No socket binding called http");
+
+        try {
+            ControllerModels.builder().addSocketBinding("http", -1).build();
+            Assert.fail("A negative port should not be allowed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void assertControllerModelsMissing(String subsystemXml, ControllerModels models, String failure) throws Exception {
+        try {
+            WildFlyXmlToCli.builder()
+                    .setXml(subsystemXml)
+                    .setExtension(new ServiceSubsystemExtension())
+                    .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                    .setControllerModels(models)
+                    .build()
+                    .convertXmlToOperations();
+            Assert.fail("The subsystem should not find everything it references");
+        } catch (IllegalStateException expected) {
+        }
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new ServiceSubsystemExtension())
+                .setSubsystemName(ServiceSubsystemExtension.SUBSYSTEM_NAME)
+                .setControllerModels(models)
+                .build()) {
+            WildFlyXmlToCli.builder()
+                    .setEngine(engine)
+                    .setXml(subsystemXml)
+                    .build()
+                    .convertXmlToOperations();
+            Assert.fail("The subsystem should not find everything it references");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains(failure));
+        }
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build();
+
+        Assert.assertEquals("", util.diff(subsystemXml, subsystemXml));
+    }
+
+    @Test
+    public void testDiffChanges() throws Exception {
+        String oldXml =
+                "<subsystem xmlns=\"" + ChildSubsystemExtension.NAMESPACE + "\" value=\"1\">" +
+                "    <child name=\"kept\" value=\"a\"/>" +
+                "    <child name=\"retyped\" value=\"a\" type=\"t\"/>" +
+                "    <child name=\"removed\" value=\"a\"/>" +
+                "</subsystem>";
+        String newXml =
+                "<subsystem xmlns=\"" + ChildSubsystemExtension.NAMESPACE + "\" value=\"2\">" +
+                "    <child name=\"kept\" value=\"b\"/>" +
+                "    <child name=\"retyped\" value=\"a\" type=\"u\"/>" +
+                "    <child name=\"added\" value=\"a\"/>" +
+                "</subsystem>";
+
+        WildFlyXmlToCli.Builder builder = WildFlyXmlToCli.builder()
+                .setExtension(new ChildSubsystemExtension())
+                .setSubsystemName(ChildSubsystemExtension.SUBSYSTEM_NAME)
+                .setBatchOperations(false);
+        checkDiff(builder.build().diff(oldXml, newXml));
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new ChildSubsystemExtension())
+                .setSubsystemName(ChildSubsystemExtension.SUBSYSTEM_NAME)
+                .build()) {
+            checkDiff(WildFlyXmlToCli.builder().setEngine(engine).setBatchOperations(false).build().diff(oldXml, newXml));
+        }
+    }
+
+    private static void checkDiff(String cli) {
+        String[] expected = {
+                "/subsystem=childsubsystem:write-attribute(name=\"value\", value=\"2\")",
+                "/subsystem=childsubsystem/child=kept:write-attribute(name=\"value\", value=\"b\")",
+                "/subsystem=childsubsystem/child=removed:remove()",
+                // The type is read-only, so the child is added again rather than written
+                "/subsystem=childsubsystem/child=retyped:remove()",
+                "/subsystem=childsubsystem/child=retyped:add(value=\"a\", type=\"u\")",
+                "/subsystem=childsubsystem/child=added:add(value=\"a\")"
+        };
+        List<String> lines = new ArrayList<>();
+        for (String line : cli.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        Assert.assertEquals(cli, expected.length, lines.size());
+        for (String line : expected) {
+            Assert.assertTrue(cli, lines.contains(line));
+        }
+        Assert.assertTrue(cli, lines.indexOf(expected[3]) < lines.indexOf(expected[4]));
+    }
+
+    @Test
+    public void testOperationsDiff() throws Exception {
+        PathAddress subsystem = PathAddress.pathAddress("subsystem", "mysubsystem");
+        List<ModelNode> oldOperations = new ArrayList<>();
+        oldOperations.add(Util.createAddOperation(subsystem));
+        oldOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "kept")), "a", "b"));
+        oldOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "removed")), "a", "b"));
+        oldOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "removed")).append(PathElement.pathElement("grandchild", "x")), "a", "b"));
+        ModelNode retyped = createAdd(subsystem.append(PathElement.pathElement("child", "retyped")), "a", "b");
+        retyped.get("b").set("x");
+        oldOperations.add(retyped);
+        oldOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "retyped")).append(PathElement.pathElement("grandchild", "y")), "a", "b"));
+        List<ModelNode> newOperations = new ArrayList<>();
+        newOperations.add(Util.createAddOperation(subsystem));
+        newOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "kept")), "a", "c"));
+        newOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "added")), "a", "b"));
+        retyped = createAdd(subsystem.append(PathElement.pathElement("child", "retyped")), "a", "b");
+        retyped.get("b").set("z");
+        newOperations.add(retyped);
+        newOperations.add(createAdd(subsystem.append(PathElement.pathElement("child", "retyped")).append(PathElement.pathElement("grandchild", "y")), "a", "b"));
+
+        // 'a' can be written, while 'b' is read-only so changing it means adding the child and its children again
+        ManagementResourceRegistration rootRegistration = ManagementResourceRegistration.Factory.forProcessType(ProcessType.STANDALONE_SERVER)
+                .createRegistration(new SimpleResourceDefinition(null, NonResolvingResourceDescriptionResolver.INSTANCE));
+        ManagementResourceRegistration child = rootRegistration
+                .registerSubModel(new SimpleResourceDefinition(subsystem.getLastElement(), NonResolvingResourceDescriptionResolver.INSTANCE))
+                .registerSubModel(new SimpleResourceDefinition(PathElement.pathElement("child"), NonResolvingResourceDescriptionResolver.INSTANCE));
+        SimpleAttributeDefinition a = new SimpleAttributeDefinitionBuilder("a", ModelType.STRING, true).build();
+        child.registerReadWriteAttribute(a, null, new ModelOnlyWriteAttributeHandler(a));
+        child.registerReadOnlyAttribute(new SimpleAttributeDefinitionBuilder("b", ModelType.STRING, true).build(), null);
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setBatchOperations(false)
+                .build();
+
+        Assert.assertEquals(
+                "/subsystem=mysubsystem/child=retyped/grandchild=y:remove()\n\n" +
+                "/subsystem=mysubsystem/child=retyped:remove()\n\n" +
+                "/subsystem=mysubsystem/child=removed/grandchild=x:remove()\n\n" +
+                "/subsystem=mysubsystem/child=removed:remove()\n\n" +
+                "/subsystem=mysubsystem/child=kept:write-attribute(name=\"a\", value=\"c\")\n\n" +
+                "/subsystem=mysubsystem/child=added:add(a=\"b\")\n\n" +
+                "/subsystem=mysubsystem/child=retyped:add(a=\"b\", b=\"z\")\n\n" +
+                "/subsystem=mysubsystem/child=retyped/grandchild=y:add(a=\"b\")\n\n",
+                util.convertOperationsToCli(OperationsDiff.diff(oldOperations, newOperations, rootRegistration)));
+    }
+
+    private static ModelNode createAdd(PathAddress address, String attribute, String value) {
+        ModelNode op = Util.createAddOperation(address);
+        op.get(attribute).set(value);
+        return op;
+    }
+
+    @Test
+    public void testConversionCache() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        Path directory = Files.createTempDirectory("xml-to-cli-cache");
+        try {
+            ConversionCache cache = ConversionCache.builder().setDirectory(directory).build();
+            WildFlyXmlToCli.Builder builder = WildFlyXmlToCli.builder()
+                    .setXml(subsystemXml)
+                    .setExtension(new SimpleSubsystemExtension())
+                    .setSubsystemName("mysubsystem")
+                    .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                    .setCache(cache);
+
+            String cli = builder.build().convertXmlToCli();
+            Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", cli);
+            Assert.assertEquals(1, cache.size());
+            Assert.assertEquals(cli, builder.build().convertXmlToCli());
+            Assert.assertEquals(1, cache.size());
+
+            // Different options give a different script
+            builder.setBatchOperations(false);
+            Assert.assertEquals("/subsystem=mysubsystem:add()\n\n", builder.build().convertXmlToCli());
+            Assert.assertEquals(2, cache.size());
+
+            // The scripts are read back from disk
+            ConversionCache diskCache = ConversionCache.builder().setDirectory(directory).build();
+            Assert.assertEquals(0, diskCache.size());
+            Assert.assertEquals("/subsystem=mysubsystem:add()\n\n", builder.setCache(diskCache).build().convertXmlToCli());
+            Assert.assertEquals(1, diskCache.size());
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testParserCache() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        ParserCache parserCache = new ParserCache(1);
+        CountingExtension first = new CountingExtension();
+        CountingExtension second = new CountingExtension();
+
+        // The second conversion with the same extension reuses the parser
+        convertWithParserCache(subsystemXml, first, parserCache);
+        convertWithParserCache(subsystemXml, first, parserCache);
+        Assert.assertEquals(1, first.parserInitializations);
+        Assert.assertEquals(1, parserCache.size());
+
+        // Another instance of the same extension class gets its own parser, evicting the first one
+        convertWithParserCache(subsystemXml, second, parserCache);
+        Assert.assertEquals(1, second.parserInitializations);
+        Assert.assertEquals(1, parserCache.size());
+        convertWithParserCache(subsystemXml, first, parserCache);
+        Assert.assertEquals(2, first.parserInitializations);
+
+        // Without a cache the parser is set up for each conversion
+        convertWithParserCache(subsystemXml, second, null);
+        Assert.assertEquals(2, second.parserInitializations);
+    }
+
+    private static void convertWithParserCache(String subsystemXml, CountingExtension extension, ParserCache parserCache) throws Exception {
+        String cli = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(extension)
+                .setSubsystemName("mysubsystem")
+                .setAddStrategy(WildFlyXmlToCli.SubsystemAddStrategy.ADD)
+                .setParserCache(parserCache)
+                .build()
+                .convertXmlToCli();
+        Assert.assertEquals("batch\n\n/subsystem=mysubsystem:add()\n\nbatch\n\n", cli);
+    }
+
+    @Test
+    public void testCliAddressRenderer() throws Exception {
+        CliAddressRenderer renderer = new CliAddressRenderer();
+        PathAddress parent = PathAddress.pathAddress("subsystem", "keycloak");
+        Assert.assertEquals("/subsystem=keycloak", renderer.get(parent));
+        Assert.assertEquals("/subsystem=keycloak/secure-deployment=\"a/b=c\"",
+                renderer.get(parent.append(PathElement.pathElement("secure-deployment", "a/b=c"))));
+        Assert.assertEquals("/subsystem=keycloak/realm=\"my realm\"",
+                renderer.get(parent.append(PathElement.pathElement("realm", "my realm"))));
+        Assert.assertEquals("/subsystem=keycloak/realm=\"say \\\"hi\\\" \\\\ (there)\"",
+                renderer.get(parent.append(PathElement.pathElement("realm", "say \"hi\" \\ (there)"))));
+        Assert.assertEquals("plain-value_1.0", CliAddressRenderer.escape("plain-value_1.0"));
+    }
+
+    @Test
+    public void testCliValueEncoder() throws Exception {
+        Assert.assertEquals("\"plain\"", encode(new ModelNode("plain")));
+        Assert.assertEquals("\"say \\\"hi\\\"\"", encode(new ModelNode("say \"hi\"")));
+        Assert.assertEquals("\"\\${my.prop:x}\"", encode(new ModelNode(new ValueExpression("${my.prop:x}"))));
+        Assert.assertEquals("\"a \\${b}\"", encode(new ModelNode("a ${b}")));
+        Assert.assertEquals("\"5\"", encode(new ModelNode(5)));
+
+        ModelNode list = new ModelNode();
+        list.add("http://localhost/*");
+        list.add("quote\"d");
+        Assert.assertEquals(list.asString(), encode(list));
+
+        ModelNode object = new ModelNode();
+        object.get("secret").set("password");
+        object.get("count").set(10L);
+        object.get("nested").add(true);
+        object.get("expr").set(new ValueExpression("${x}"));
+        Assert.assertEquals(object.asString(), encode(object));
+    }
+
+    @Test
+    public void testRenderingDoesNotModifyOperations() throws Exception {
+        List<ModelNode> operations = new ArrayList<>();
+        operations.add(Util.createAddOperation(PathAddress.pathAddress("subsystem", "mysubsystem")));
+        operations.add(createAdd(PathAddress.pathAddress("subsystem", "mysubsystem").append(PathElement.pathElement("child", "one")), "a", "b"));
+        // An operation for the root resource with no address, which should not get one added
+        ModelNode rootOp = new ModelNode();
+        rootOp.get("operation").set("reload");
+        operations.add(rootOp);
+        List<ModelNode> copy = new ArrayList<>();
+        for (ModelNode op : operations) {
+            copy.add(op.clone());
+        }
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build();
+
+        String cli = util.convertOperationsToCli(operations);
+        Assert.assertEquals(copy, operations);
+        Assert.assertEquals(cli, util.convertOperationsToCli(operations));
+    }
+
+    @Test
+    public void testCompositeOperation() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build();
+
+        ModelNode composite = util.convertXmlToCompositeOperation();
+        Assert.assertEquals("composite", composite.get("operation").asString());
+        List<ModelNode> steps = composite.get("steps").asList();
+        Assert.assertEquals(1, steps.size());
+        Assert.assertEquals("add", steps.get(0).get("operation").asString());
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        util.convertXmlToCompositeOperation(binary, WildFlyXmlToCli.CompositeEncoding.DMR_BINARY);
+        ModelNode read = new ModelNode();
+        read.readExternal(new DataInputStream(new ByteArrayInputStream(binary.toByteArray())));
+        Assert.assertEquals(composite, read);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        util.convertXmlToCompositeOperation(json, WildFlyXmlToCli.CompositeEncoding.JSON);
+        Assert.assertEquals(composite, ModelNode.fromJSONString(new String(json.toByteArray(), StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testOutputFormats() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+
+        WildFlyXmlToCli util = WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .build();
+        ModelNode expected = new ModelNode().setEmptyList();
+        for (ModelNode op : util.convertXmlToOperations()) {
+            expected.add(op);
+        }
+
+        Assert.assertEquals(util.convertXmlToCli(), new String(convert(util, OutputFormats.CLI), StandardCharsets.UTF_8));
+        Assert.assertEquals(expected, ModelNode.fromJSONString(new String(convert(util, OutputFormats.JSON), StandardCharsets.UTF_8)));
+        Assert.assertEquals(expected, ModelNode.fromString(new String(convert(util, OutputFormats.DMR_TEXT), StandardCharsets.UTF_8)));
+        ModelNode binary = new ModelNode();
+        binary.readExternal(new DataInputStream(new ByteArrayInputStream(convert(util, OutputFormats.DMR_BINARY))));
+        Assert.assertEquals(expected, binary);
+
+        // The composite encodings are written by the composite formats
+        for (WildFlyXmlToCli.CompositeEncoding encoding : WildFlyXmlToCli.CompositeEncoding.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            util.convertXmlToCompositeOperation(out, encoding);
+            Assert.assertArrayEquals(convert(util, encoding.getFormat()), out.toByteArray());
+        }
+        Assert.assertEquals(util.convertXmlToCompositeOperation(),
+                ModelNode.fromJSONString(new String(convert(util, OutputFormats.COMPOSITE_JSON), StandardCharsets.UTF_8)));
+
+        // Custom formats can use the converter's output options
+        OutputFormat upperCaseCli = (operations, converter, out) -> {
+            StringBuilder sb = new StringBuilder();
+            converter.renderCli(operations, sb);
+            out.write(sb.toString().toUpperCase(Locale.ENGLISH).getBytes(StandardCharsets.UTF_8));
+        };
+        Assert.assertEquals(util.convertXmlToCli().toUpperCase(Locale.ENGLISH), new String(convert(util, upperCaseCli), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] convert(WildFlyXmlToCli util, OutputFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        util.convertXmlTo(format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testConversionListener() throws Exception {
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        HistogramConversionListener listener = new HistogramConversionListener();
+
+        WildFlyXmlToCli.builder()
+                .setXml(subsystemXml)
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setListener(listener)
+                .build()
+                .convertXmlToCli();
+
+        for (ConversionPhase phase : new ConversionPhase[]{ConversionPhase.PARSE, ConversionPhase.BOOT, ConversionPhase.DESCRIBE, ConversionPhase.RENDER}) {
+            HistogramConversionListener.PhaseStatistics statistics = listener.getStatistics(phase);
+            Assert.assertEquals(phase.name(), 1, statistics.getCount());
+            Assert.assertEquals(phase.name(), 1, statistics.getTotalOperations());
+            Assert.assertTrue(phase.name(), statistics.getPercentileNanos(50) <= statistics.getMaxNanos());
+        }
+        // The boot operations also include the ones added by the controller initializer
+        HistogramConversionListener.PhaseStatistics execute = listener.getStatistics(ConversionPhase.EXECUTE);
+        Assert.assertEquals(1, execute.getCount());
+        Assert.assertTrue(execute.getTotalOperations() >= 1);
+        Assert.assertTrue(execute.getMaxNanos() <= listener.getStatistics(ConversionPhase.BOOT).getMaxNanos());
+    }
+
+    @Test
+    public void testClientExecutors() throws Exception {
+        ExecutorService executor = ClientExecutors.create(true);
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+            Assert.assertNotSame(Thread.currentThread(), thread);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String subsystemXml =
+                "<subsystem xmlns=\"" + SimpleSubsystemExtension.NAMESPACE + "\">" +
+                "</subsystem>";
+        try (XmlToCliEngine engine = XmlToCliEngine.builder()
+                .setExtension(new SimpleSubsystemExtension())
+                .setSubsystemName("mysubsystem")
+                .setVirtualThreads(true)
+                .build()) {
+            Assert.assertTrue(engine.convertXmlToCli(subsystemXml).contains("/subsystem=mysubsystem:add"));
+        }
+    }
+
+    private static String encode(ModelNode value) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        CliValueEncoder.write(value, sb);
+        return sb.toString();
+    }
+
+    private static class CountingExtension extends SimpleSubsystemExtension {
+        private int parserInitializations;
+
+        @Override
+        public void initializeParsers(ExtensionParsingContext context) {
+            parserInitializations++;
+            super.initializeParsers(context);
+        }
+    }
+
+    /**
+     * Counts the stream readers created by the factory it delegates to
+     */
+    private static class RecordingXmlInputFactory extends XMLInputFactory {
+        private final XMLInputFactory delegate;
+        private volatile int readers;
+
+        RecordingXmlInputFactory(XMLInputFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        private XMLStreamReader record(XMLStreamReader reader) {
+            synchronized (this) {
+                readers++;
+            }
+            return reader;
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(Reader reader) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(reader));
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(Source source) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(source));
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(InputStream stream) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(stream));
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(InputStream stream, String encoding) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(stream, encoding));
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(String systemId, InputStream stream) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(systemId, stream));
+        }
+
+        @Override
+        public XMLStreamReader createXMLStreamReader(String systemId, Reader reader) throws XMLStreamException {
+            return record(delegate.createXMLStreamReader(systemId, reader));
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(Reader reader) throws XMLStreamException {
+            return delegate.createXMLEventReader(reader);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(String systemId, Reader reader) throws XMLStreamException {
+            return delegate.createXMLEventReader(systemId, reader);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(XMLStreamReader reader) throws XMLStreamException {
+            return delegate.createXMLEventReader(reader);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(Source source) throws XMLStreamException {
+            return delegate.createXMLEventReader(source);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(InputStream stream) throws XMLStreamException {
+            return delegate.createXMLEventReader(stream);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(InputStream stream, String encoding) throws XMLStreamException {
+            return delegate.createXMLEventReader(stream, encoding);
+        }
+
+        @Override
+        public XMLEventReader createXMLEventReader(String systemId, InputStream stream) throws XMLStreamException {
+            return delegate.createXMLEventReader(systemId, stream);
+        }
+
+        @Override
+        public XMLStreamReader createFilteredReader(XMLStreamReader reader, StreamFilter filter) throws XMLStreamException {
+            return delegate.createFilteredReader(reader, filter);
+        }
+
+        @Override
+        public XMLEventReader createFilteredReader(XMLEventReader reader, EventFilter filter) throws XMLStreamException {
+            return delegate.createFilteredReader(reader, filter);
+        }
+
+        @Override
+        public XMLResolver getXMLResolver() {
+            return delegate.getXMLResolver();
+        }
+
+        @Override
+        public void setXMLResolver(XMLResolver resolver) {
+            delegate.setXMLResolver(resolver);
+        }
+
+        @Override
+        public XMLReporter getXMLReporter() {
+            return delegate.getXMLReporter();
+        }
+
+        @Override
+        public void setXMLReporter(XMLReporter reporter) {
+            delegate.setXMLReporter(reporter);
+        }
+
+        @Override
+        public void setProperty(String name, Object value) {
+            delegate.setProperty(name, value);
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return delegate.getProperty(name);
+        }
+
+        @Override
+        public boolean isPropertySupported(String name) {
+            return delegate.isPropertySupported(name);
+        }
+
+        @Override
+        public void setEventAllocator(XMLEventAllocator allocator) {
+            delegate.setEventAllocator(allocator);
+        }
+
+        @Override
+        public XMLEventAllocator getEventAllocator() {
+            return delegate.getEventAllocator();
+        }
+    }
 }
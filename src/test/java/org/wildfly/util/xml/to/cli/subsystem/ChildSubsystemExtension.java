@@ -0,0 +1,158 @@
+package org.wildfly.util.xml.to.cli.subsystem;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.NAME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.ExtensionContext;
+import org.jboss.as.controller.ModelOnlyAddStepHandler;
+import org.jboss.as.controller.ModelOnlyRemoveStepHandler;
+import org.jboss.as.controller.ModelOnlyWriteAttributeHandler;
+import org.jboss.as.controller.ModelVersion;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.SimpleResourceDefinition;
+import org.jboss.as.controller.SubsystemRegistration;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
+import org.jboss.as.controller.operations.common.GenericSubsystemDescribeHandler;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.parsing.ParseUtils;
+import org.jboss.as.controller.persistence.SubsystemMarshallingContext;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+import org.jboss.staxmapper.XMLElementReader;
+import org.jboss.staxmapper.XMLElementWriter;
+import org.jboss.staxmapper.XMLExtendedStreamReader;
+import org.jboss.staxmapper.XMLExtendedStreamWriter;
+
+/**
+ * A subsystem with a writable {@code value} attribute, and {@code child} resources which have a writable
+ * {@code value} attribute and a read-only {@code type} attribute, which can only be set when adding them.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class ChildSubsystemExtension implements Extension {
+
+    /** The name space used for the {@code subsystem} element */
+    public static final String NAMESPACE = "urn:mycompany:childsubsystem:1.0";
+
+    /** The name of our subsystem within the model. */
+    public static final String SUBSYSTEM_NAME = "childsubsystem";
+
+    static final String CHILD = "child";
+
+    static final SimpleAttributeDefinition VALUE = new SimpleAttributeDefinitionBuilder("value", ModelType.STRING, true)
+            .build();
+
+    static final SimpleAttributeDefinition TYPE = new SimpleAttributeDefinitionBuilder("type", ModelType.STRING, true)
+            .build();
+
+    private final SubsystemParser parser = new SubsystemParser();
+
+    @Override
+    public void initializeParsers(ExtensionParsingContext context) {
+        context.setSubsystemXmlMapping(SUBSYSTEM_NAME, NAMESPACE, parser);
+    }
+
+    @Override
+    public void initialize(ExtensionContext context) {
+        final SubsystemRegistration subsystem = context.registerSubsystem(SUBSYSTEM_NAME, ModelVersion.create(1));
+        final ManagementResourceRegistration registration = subsystem.registerSubsystemModel(new SimpleResourceDefinition(
+                PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME),
+                new NonResolvingResourceDescriptionResolver(),
+                new ModelOnlyAddStepHandler(VALUE),
+                ModelOnlyRemoveStepHandler.INSTANCE
+        ));
+        registration.registerReadWriteAttribute(VALUE, null, new ModelOnlyWriteAttributeHandler(VALUE));
+        //We always need to add a 'describe' operation
+        registration.registerOperationHandler(GenericSubsystemDescribeHandler.DEFINITION, GenericSubsystemDescribeHandler.INSTANCE);
+
+        final ManagementResourceRegistration child = registration.registerSubModel(new SimpleResourceDefinition(
+                PathElement.pathElement(CHILD),
+                new NonResolvingResourceDescriptionResolver(),
+                new ModelOnlyAddStepHandler(VALUE, TYPE),
+                ModelOnlyRemoveStepHandler.INSTANCE
+        ));
+        child.registerReadWriteAttribute(VALUE, null, new ModelOnlyWriteAttributeHandler(VALUE));
+        child.registerReadOnlyAttribute(TYPE, null);
+        subsystem.registerXMLElementWriter(parser);
+    }
+
+    private static class SubsystemParser implements XMLStreamConstants, XMLElementReader<List<ModelNode>>, XMLElementWriter<SubsystemMarshallingContext> {
+
+        @Override
+        public void writeContent(XMLExtendedStreamWriter writer, SubsystemMarshallingContext context) throws XMLStreamException {
+            context.startSubsystemElement(NAMESPACE, false);
+            ModelNode model = context.getModelNode();
+            VALUE.marshallAsAttribute(model, writer);
+            if (model.hasDefined(CHILD)) {
+                for (Property property : model.get(CHILD).asPropertyList()) {
+                    writer.writeStartElement(CHILD);
+                    writer.writeAttribute(NAME, property.getName());
+                    VALUE.marshallAsAttribute(property.getValue(), writer);
+                    TYPE.marshallAsAttribute(property.getValue(), writer);
+                    writer.writeEndElement();
+                }
+            }
+            writer.writeEndElement();
+        }
+
+        @Override
+        public void readElement(XMLExtendedStreamReader reader, List<ModelNode> list) throws XMLStreamException {
+            PathAddress address = PathAddress.pathAddress(PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME));
+            ModelNode add = Util.createAddOperation(address);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (VALUE.getXmlName().equals(reader.getAttributeLocalName(i))) {
+                    VALUE.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else {
+                    throw ParseUtils.unexpectedAttribute(reader, i);
+                }
+            }
+            list.add(add);
+
+            while (reader.hasNext() && reader.nextTag() != END_ELEMENT) {
+                if (!CHILD.equals(reader.getLocalName())) {
+                    throw ParseUtils.unexpectedElement(reader);
+                }
+                readChild(reader, address, list);
+            }
+        }
+
+        private void readChild(XMLExtendedStreamReader reader, PathAddress parent, List<ModelNode> list) throws XMLStreamException {
+            String name = null;
+            ModelNode add = new ModelNode();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attribute = reader.getAttributeLocalName(i);
+                if (NAME.equals(attribute)) {
+                    name = reader.getAttributeValue(i);
+                } else if (VALUE.getXmlName().equals(attribute)) {
+                    VALUE.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else if (TYPE.getXmlName().equals(attribute)) {
+                    TYPE.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else {
+                    throw ParseUtils.unexpectedAttribute(reader, i);
+                }
+            }
+            if (name == null) {
+                throw ParseUtils.missingRequired(reader, Collections.singleton(NAME));
+            }
+            ParseUtils.requireNoContent(reader);
+            ModelNode op = Util.createAddOperation(parent.append(CHILD, name));
+            for (String key : add.keys()) {
+                op.get(key).set(add.get(key));
+            }
+            list.add(op);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.wildfly.util.xml.to.cli.subsystem;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.ExtensionContext;
+import org.jboss.as.controller.ModelOnlyAddStepHandler;
+import org.jboss.as.controller.ModelOnlyRemoveStepHandler;
+import org.jboss.as.controller.ModelOnlyWriteAttributeHandler;
+import org.jboss.as.controller.ModelVersion;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.SimpleResourceDefinition;
+import org.jboss.as.controller.SubsystemRegistration;
+import org.jboss.as.controller.capability.RuntimeCapability;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
+import org.jboss.as.controller.operations.common.GenericSubsystemDescribeHandler;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.parsing.ParseUtils;
+import org.jboss.as.controller.persistence.SubsystemMarshallingContext;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.staxmapper.XMLElementReader;
+import org.jboss.staxmapper.XMLElementWriter;
+import org.jboss.staxmapper.XMLExtendedStreamReader;
+import org.jboss.staxmapper.XMLExtendedStreamWriter;
+
+/**
+ * A subsystem whose {@code provider} attribute references the capability provided by
+ * {@link ProviderSubsystemExtension}, so that it has to be added after that subsystem.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class ConsumerSubsystemExtension implements Extension {
+
+    /** The name space used for the {@code subsystem} element */
+    public static final String NAMESPACE = "urn:mycompany:consumersubsystem:1.0";
+
+    /** The name of our subsystem within the model. */
+    public static final String SUBSYSTEM_NAME = "consumersubsystem";
+
+    static final RuntimeCapability<Void> CAPABILITY = RuntimeCapability.Builder.of("org.wildfly.test.consumer").build();
+
+    static final SimpleAttributeDefinition PROVIDER = new SimpleAttributeDefinitionBuilder("provider", ModelType.STRING, false)
+            .setCapabilityReference(ProviderSubsystemExtension.CAPABILITY_NAME, CAPABILITY)
+            .build();
+
+    private final SubsystemParser parser = new SubsystemParser();
+
+    @Override
+    public void initializeParsers(ExtensionParsingContext context) {
+        context.setSubsystemXmlMapping(SUBSYSTEM_NAME, NAMESPACE, parser);
+    }
+
+    @Override
+    public void initialize(ExtensionContext context) {
+        final SubsystemRegistration subsystem = context.registerSubsystem(SUBSYSTEM_NAME, ModelVersion.create(1));
+        final ManagementResourceRegistration registration = subsystem.registerSubsystemModel(new SimpleResourceDefinition(
+                PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME),
+                new NonResolvingResourceDescriptionResolver(),
+                new ModelOnlyAddStepHandler(PROVIDER),
+                ModelOnlyRemoveStepHandler.INSTANCE
+        ));
+        registration.registerCapability(CAPABILITY);
+        registration.registerReadWriteAttribute(PROVIDER, null, new ModelOnlyWriteAttributeHandler(PROVIDER));
+        registration.registerRequirements(Collections.singleton(PROVIDER.getReferenceRecorder()));
+        //We always need to add a 'describe' operation
+        registration.registerOperationHandler(GenericSubsystemDescribeHandler.DEFINITION, GenericSubsystemDescribeHandler.INSTANCE);
+        subsystem.registerXMLElementWriter(parser);
+    }
+
+    private static class SubsystemParser implements XMLStreamConstants, XMLElementReader<List<ModelNode>>, XMLElementWriter<SubsystemMarshallingContext> {
+
+        @Override
+        public void writeContent(XMLExtendedStreamWriter writer, SubsystemMarshallingContext context) throws XMLStreamException {
+            context.startSubsystemElement(NAMESPACE, false);
+            PROVIDER.marshallAsAttribute(context.getModelNode(), writer);
+            writer.writeEndElement();
+        }
+
+        @Override
+        public void readElement(XMLExtendedStreamReader reader, List<ModelNode> list) throws XMLStreamException {
+            ModelNode add = Util.createAddOperation(PathAddress.pathAddress(PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME)));
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (PROVIDER.getXmlName().equals(reader.getAttributeLocalName(i))) {
+                    PROVIDER.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else {
+                    throw ParseUtils.unexpectedAttribute(reader, i);
+                }
+            }
+            if (!add.hasDefined(PROVIDER.getName())) {
+                throw ParseUtils.missingRequired(reader, Collections.singleton(PROVIDER.getXmlName()));
+            }
+            ParseUtils.requireNoContent(reader);
+            list.add(add);
+        }
+    }
+}
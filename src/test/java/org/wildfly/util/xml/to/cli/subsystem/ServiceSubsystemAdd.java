@@ -0,0 +1,66 @@
+package org.wildfly.util.xml.to.cli.subsystem;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.PATH;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SOCKET_BINDING;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SOCKET_BINDING_GROUP;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.registry.Resource;
+import org.jboss.dmr.ModelNode;
+import org.jboss.msc.service.Service;
+
+/**
+ * Handler responsible for adding the subsystem resource to the model, checking that the socket binding and path
+ * it references exist, and installing its service
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+class ServiceSubsystemAdd extends AbstractAddStepHandler {
+
+    static final ServiceSubsystemAdd INSTANCE = new ServiceSubsystemAdd();
+
+    private ServiceSubsystemAdd() {
+        super(ServiceSubsystemExtension.SOCKET_BINDING, ServiceSubsystemExtension.PATH);
+    }
+
+    @Override
+    protected void populateModel(OperationContext context, ModelNode operation, Resource resource) throws OperationFailedException {
+        super.populateModel(context, operation, resource);
+        ModelNode model = resource.getModel();
+        Resource root = context.readResourceFromRoot(PathAddress.EMPTY_ADDRESS, false);
+        if (model.hasDefined(ServiceSubsystemExtension.SOCKET_BINDING.getName())) {
+            String socketBinding = model.get(ServiceSubsystemExtension.SOCKET_BINDING.getName()).asString();
+            boolean found = false;
+            for (Resource.ResourceEntry group : root.getChildren(SOCKET_BINDING_GROUP)) {
+                found |= group.hasChild(PathElement.pathElement(SOCKET_BINDING, socketBinding));
+            }
+            if (!found) {
+                throw new OperationFailedException("No socket binding called " + socketBinding);
+            }
+        }
+        if (model.hasDefined(ServiceSubsystemExtension.PATH.getName())) {
+            String path = model.get(ServiceSubsystemExtension.PATH.getName()).asString();
+            if (!root.hasChild(PathElement.pathElement(PATH, path))) {
+                throw new OperationFailedException("No path called " + path);
+            }
+        }
+    }
+
+    /**
+     * The service is installed in admin-only controllers as well, as if the subsystem had to be running to be
+     * managed
+     */
+    @Override
+    protected boolean requiresRuntime(OperationContext context) {
+        return true;
+    }
+
+    @Override
+    protected void performRuntime(OperationContext context, ModelNode operation, Resource resource) throws OperationFailedException {
+        context.getServiceTarget().addService(ServiceSubsystemExtension.SERVICE_NAME, Service.NULL).install();
+    }
+}
@@ -0,0 +1,164 @@
+package org.wildfly.util.xml.to.cli.subsystem;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUBSYSTEM;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.jboss.as.controller.Extension;
+import org.jboss.as.controller.ExtensionContext;
+import org.jboss.as.controller.ModelOnlyAddStepHandler;
+import org.jboss.as.controller.ModelOnlyRemoveStepHandler;
+import org.jboss.as.controller.ModelOnlyWriteAttributeHandler;
+import org.jboss.as.controller.ModelVersion;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.SimpleResourceDefinition;
+import org.jboss.as.controller.SubsystemRegistration;
+import org.jboss.as.controller.descriptions.NonResolvingResourceDescriptionResolver;
+import org.jboss.as.controller.operations.common.GenericSubsystemDescribeHandler;
+import org.jboss.as.controller.operations.common.Util;
+import org.jboss.as.controller.parsing.ExtensionParsingContext;
+import org.jboss.as.controller.parsing.ParseUtils;
+import org.jboss.as.controller.persistence.SubsystemMarshallingContext;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.staxmapper.XMLElementReader;
+import org.jboss.staxmapper.XMLElementWriter;
+import org.jboss.staxmapper.XMLExtendedStreamReader;
+import org.jboss.staxmapper.XMLExtendedStreamWriter;
+
+/**
+ * A subsystem which does a bit more than {@link SimpleSubsystemExtension}. Adding it installs a service under a
+ * fixed name, even in an admin-only controller, and it can reference a socket binding and a path, which must exist
+ * in the model. It also has {@code item} child resources.
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+public class ServiceSubsystemExtension implements Extension {
+
+    /** The name space used for the {@code subsystem} element */
+    public static final String NAMESPACE = "urn:mycompany:servicesubsystem:1.0";
+
+    /** The name of our subsystem within the model. */
+    public static final String SUBSYSTEM_NAME = "servicesubsystem";
+
+    /** The name of the service installed when the subsystem is added */
+    public static final ServiceName SERVICE_NAME = ServiceName.JBOSS.append("test", SUBSYSTEM_NAME);
+
+    static final PathElement SUBSYSTEM_PATH = PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME);
+
+    static final String ITEM = "item";
+
+    static final String NAME = "name";
+
+    static final SimpleAttributeDefinition SOCKET_BINDING = new SimpleAttributeDefinitionBuilder("socket-binding", ModelType.STRING, true)
+            .build();
+
+    static final SimpleAttributeDefinition PATH = new SimpleAttributeDefinitionBuilder("path", ModelType.STRING, true)
+            .build();
+
+    static final SimpleAttributeDefinition VALUE = new SimpleAttributeDefinitionBuilder("value", ModelType.STRING, false)
+            .build();
+
+    private final SubsystemParser parser = new SubsystemParser();
+
+    @Override
+    public void initializeParsers(ExtensionParsingContext context) {
+        context.setSubsystemXmlMapping(SUBSYSTEM_NAME, NAMESPACE, parser);
+    }
+
+    @Override
+    public void initialize(ExtensionContext context) {
+        final SubsystemRegistration subsystem = context.registerSubsystem(SUBSYSTEM_NAME, ModelVersion.create(1));
+        final ManagementResourceRegistration registration = subsystem.registerSubsystemModel(new SimpleResourceDefinition(
+                SUBSYSTEM_PATH,
+                new NonResolvingResourceDescriptionResolver(),
+                ServiceSubsystemAdd.INSTANCE,
+                ServiceSubsystemRemove.INSTANCE
+        ));
+        registration.registerReadWriteAttribute(SOCKET_BINDING, null, new ModelOnlyWriteAttributeHandler(SOCKET_BINDING));
+        registration.registerReadWriteAttribute(PATH, null, new ModelOnlyWriteAttributeHandler(PATH));
+        //We always need to add a 'describe' operation
+        registration.registerOperationHandler(GenericSubsystemDescribeHandler.DEFINITION, GenericSubsystemDescribeHandler.INSTANCE);
+
+        final ManagementResourceRegistration item = registration.registerSubModel(new SimpleResourceDefinition(
+                PathElement.pathElement(ITEM),
+                new NonResolvingResourceDescriptionResolver(),
+                new ModelOnlyAddStepHandler(VALUE),
+                ModelOnlyRemoveStepHandler.INSTANCE
+        ));
+        item.registerReadWriteAttribute(VALUE, null, new ModelOnlyWriteAttributeHandler(VALUE));
+
+        subsystem.registerXMLElementWriter(parser);
+    }
+
+    private static class SubsystemParser implements XMLStreamConstants, XMLElementReader<List<ModelNode>>, XMLElementWriter<SubsystemMarshallingContext> {
+
+        @Override
+        public void writeContent(XMLExtendedStreamWriter writer, SubsystemMarshallingContext context) throws XMLStreamException {
+            context.startSubsystemElement(NAMESPACE, false);
+            ModelNode model = context.getModelNode();
+            SOCKET_BINDING.marshallAsAttribute(model, writer);
+            PATH.marshallAsAttribute(model, writer);
+            if (model.hasDefined(ITEM)) {
+                for (Property item : model.get(ITEM).asPropertyList()) {
+                    writer.writeEmptyElement(ITEM);
+                    writer.writeAttribute(NAME, item.getName());
+                    VALUE.marshallAsAttribute(item.getValue(), writer);
+                }
+            }
+            writer.writeEndElement();
+        }
+
+        @Override
+        public void readElement(XMLExtendedStreamReader reader, List<ModelNode> list) throws XMLStreamException {
+            final PathAddress address = PathAddress.pathAddress(SUBSYSTEM_PATH);
+            ModelNode add = Util.createAddOperation(address);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attribute = reader.getAttributeLocalName(i);
+                if (SOCKET_BINDING.getXmlName().equals(attribute)) {
+                    SOCKET_BINDING.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else if (PATH.getXmlName().equals(attribute)) {
+                    PATH.parseAndSetParameter(reader.getAttributeValue(i), add, reader);
+                } else {
+                    throw ParseUtils.unexpectedAttribute(reader, i);
+                }
+            }
+            list.add(add);
+
+            while (reader.hasNext() && reader.nextTag() != END_ELEMENT) {
+                if (!ITEM.equals(reader.getLocalName())) {
+                    throw ParseUtils.unexpectedElement(reader);
+                }
+                String name = null;
+                String value = null;
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String attribute = reader.getAttributeLocalName(i);
+                    if (NAME.equals(attribute)) {
+                        name = reader.getAttributeValue(i);
+                    } else if (VALUE.getXmlName().equals(attribute)) {
+                        value = reader.getAttributeValue(i);
+                    } else {
+                        throw ParseUtils.unexpectedAttribute(reader, i);
+                    }
+                }
+                if (name == null || value == null) {
+                    throw ParseUtils.missingRequired(reader, Collections.singleton(name == null ? NAME : VALUE.getXmlName()));
+                }
+                ParseUtils.requireNoContent(reader);
+                ModelNode itemAdd = Util.createAddOperation(address.append(PathElement.pathElement(ITEM, name)));
+                VALUE.parseAndSetParameter(value, itemAdd, reader);
+                list.add(itemAdd);
+            }
+        }
+    }
+}
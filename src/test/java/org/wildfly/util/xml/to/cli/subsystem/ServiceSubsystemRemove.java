@@ -0,0 +1,29 @@
+package org.wildfly.util.xml.to.cli.subsystem;
+
+import org.jboss.as.controller.AbstractRemoveStepHandler;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Handler responsible for removing the subsystem resource from the model, and its service
+ *
+ * @author <a href="mailto:kabir.khan@jboss.com">Kabir Khan</a>
+ */
+class ServiceSubsystemRemove extends AbstractRemoveStepHandler {
+
+    static final ServiceSubsystemRemove INSTANCE = new ServiceSubsystemRemove();
+
+    private ServiceSubsystemRemove() {
+    }
+
+    @Override
+    protected boolean requiresRuntime(OperationContext context) {
+        return true;
+    }
+
+    @Override
+    protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        context.removeService(ServiceSubsystemExtension.SERVICE_NAME);
+    }
+}